@@ -0,0 +1,108 @@
+package tila;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Fails when ParserRec allocates more than BUDGET bytes per token beyond
+// the tree it returns, on the program Benchmark generates. The tree is
+// measured by building the same nodes again directly, with a copy of each
+// distinct token in it; what the parse allocated on top of that is the
+// parser's own, such as list growth and the cursor's token table.
+// Run by the build in the test phase, or on its own:
+//   java -cp out/ tila.AllocationTest [statements]
+public class AllocationTest {
+    private static final double BUDGET = 4;
+
+    public static void main(String[] args) throws IOException {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Path file = Files.createTempFile("tila-allocation", ".tila");
+        try {
+            Benchmark.generate(file, statements);
+            double perToken = overhead(new Scanner(Files.readString(file)).scanBuffer());
+            System.out.printf("%-12s %8.1f B/token%n", "overhead", perToken);
+            if (perToken > BUDGET) {
+                throw new IllegalStateException(String.format("ParserRec allocated %.1f bytes per token besides the tree, budget is %.0f", perToken, BUDGET));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Measured on the first full parse, still cold, so that nothing depends
+    // on the JIT optimizing allocations away. A tiny parse and copy first
+    // keep class loading out of the count, and the token map is sized up
+    // front so that filling it allocates nothing.
+    static double overhead(TokenBuffer tokens) {
+        Expression warm = new ParserRec(new Scanner("begin int a; a = (1 - 2) * 3 ^ 4; while a do begin print a; end; end").scanBuffer().cursor()).parse();
+        copy(warm, new IdentityHashMap<>());
+        Map<Token, Token> copies = new IdentityHashMap<>(tokens.size());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        Expression program = new ParserRec(tokens.cursor()).parse();
+        long parsed = threads.getThreadAllocatedBytes(thread);
+        copy(program, copies);
+        long copied = threads.getThreadAllocatedBytes(thread);
+        return ((parsed - before) - (copied - parsed)) / (double) tokens.size();
+    }
+
+    // Only the node kinds ParserRec builds.
+    private static Expression copy(Expression node, Map<Token, Token> copies) {
+        switch (node.kind) {
+            case Expression.PROGRAM:
+                return new Expression.Program(copy(((Expression.Program) node).statements, copies));
+            case Expression.BLOCK: {
+                Expression.Block block = (Expression.Block) node;
+                List<Expression> statements = new ArrayList<>(block.statements.size());
+                for (Expression statement : block.statements) {
+                    statements.add(copy(statement, copies));
+                }
+                return new Expression.Block(statements, block.starts.clone());
+            }
+            case Expression.DECL: {
+                Expression.Decl decl = (Expression.Decl) node;
+                return new Expression.Decl(copy(decl.type, copies), copy(decl.identifier, copies));
+            }
+            case Expression.ASSIGNMENT: {
+                Expression.Assignment assignment = (Expression.Assignment) node;
+                return new Expression.Assignment(copy(assignment.id, copies), copy(assignment.expr, copies));
+            }
+            case Expression.WHILE: {
+                Expression.While loop = (Expression.While) node;
+                return new Expression.While(copy(loop.condition, copies), copy(loop.body, copies));
+            }
+            case Expression.UNARY: {
+                Expression.Unary unary = (Expression.Unary) node;
+                return new Expression.Unary(copy(unary.operator, copies), copy(unary.right, copies));
+            }
+            case Expression.BINARY: {
+                Expression.Binary binary = (Expression.Binary) node;
+                return new Expression.Binary(copy(binary.left, copies), copy(binary.operator, copies), copy(binary.right, copies));
+            }
+            case Expression.GROUPING:
+                return new Expression.Grouping(copy(((Expression.Grouping) node).expression, copies));
+            case Expression.LITERAL:
+                return new Expression.Literal(copy((Token) ((Expression.Literal) node).value, copies));
+            default:
+                throw new IllegalArgumentException("not built by ParserRec: " + node.kind);
+        }
+    }
+
+    // Identifier and keyword lexemes come from the symbol table, so only a
+    // number's is allocated with its token; the operators are few.
+    private static Token copy(Token token, Map<Token, Token> copies) {
+        Token copy = copies.get(token);
+        if (copy == null) {
+            String lexeme = token.type == TokenType.NUMBER ? String.valueOf(token.value) : token.lexeme;
+            copy = new Token(token.type, lexeme, token.value, token.line, token.column, token.symbol);
+            copies.put(token, copy);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,257 @@
+package tila;
+
+import java.util.Arrays;
+
+import static tila.TokenType.*;
+
+// ParserRec's grammar, error messages and recovery, building an AstArena
+// straight from a TokenBuffer. No Token or Expression is created unless an
+// error has to be reported.
+class ArenaParser {
+    private static class ParseError extends RuntimeException {
+        ParseError() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final ParseError PARSE_ERROR = new ParseError();
+
+    private final TokenBuffer tokens;
+    private final AstArena arena;
+    private final Diagnostics diagnostics;
+    private int current = 0;
+
+    ArenaParser(TokenBuffer tokens) {
+        this(tokens, null);
+    }
+
+    // Syntax errors go to diagnostics when one is given, otherwise straight
+    // to Tila.error.
+    ArenaParser(TokenBuffer tokens, Diagnostics diagnostics) {
+        this.tokens = tokens;
+        this.arena = new AstArena(tokens);
+        this.diagnostics = diagnostics;
+    }
+
+    AstArena parse() {
+        program();
+        return arena;
+    }
+
+    private TokenType peekType() {
+        return tokens.type(current);
+    }
+
+    private boolean match(TokenType type) {
+        if (peekType() == type && type != EOF) {
+            current++;
+            return true;
+        }
+        return false;
+    }
+
+    private void consume(TokenType type, String message) {
+        if (!match(type)) throw error(message);
+    }
+
+    private ParseError error(String message) {
+        if (diagnostics != null) {
+            diagnostics.error(tokens.line(current), tokens.column(current), message);
+        } else {
+            Tila.error(tokens.token(current), message);
+        }
+        return PARSE_ERROR;
+    }
+
+    // Same panic mode as ParserRec.synchronize, except that a 'begin' is
+    // not skipped here: it returns true and statements parses the block
+    // on its own stack, then carries on synchronizing.
+    private boolean synchronize() {
+        while (true) {
+            switch (peekType()) {
+                case SEMICOLON:
+                    current++;
+                    return false;
+                case END:
+                case WHILE:
+                case EOF:
+                    return false;
+                case BEGIN:
+                    current++;
+                    return true;
+                default:
+                    current++;
+            }
+        }
+    }
+
+    private void program() {
+        int begin = current;
+        if (!match(BEGIN)) error("Expect expression");
+        int block = statements(begin);
+        if (!match(END)) {
+            error("Expect 'end' after expression");
+        } else if (peekType() != EOF) {
+            error("Expect end of input");
+        }
+        arena.add(AstArena.PROGRAM, begin, block);
+    }
+
+    // Each open block is a frame of FRAME ints on an explicit stack, so
+    // nested while loops cost heap rather than call stack: where the block
+    // begins, its first and last statements so far, and the 'while' token
+    // and condition it is the body of. A block entered while synchronizing
+    // has no 'while' and is parsed only to be skipped.
+    private static final int FRAME = 5;
+    private static final int BEGIN_AT = 0;
+    private static final int FIRST_AT = 1;
+    private static final int LAST_AT = 2;
+    private static final int KEYWORD_AT = 3;
+    private static final int CONDITION_AT = 4;
+
+    private int[] frames = new int[FRAME * 8];
+    private int top = -FRAME;
+
+    private int statements(int begin) {
+        open(begin, AstArena.NONE, AstArena.NONE);
+        while (true) {
+            if (peekType() == END || peekType() == EOF) {
+                int block = arena.add(AstArena.BLOCK, frames[top + BEGIN_AT], frames[top + FIRST_AT]);
+                int keyword = frames[top + KEYWORD_AT];
+                int condition = frames[top + CONDITION_AT];
+                top -= FRAME;
+                if (top < 0) return block;
+                if (keyword == AstArena.NONE) {
+                    match(END);
+                    recover();
+                    continue;
+                }
+                try {
+                    arena.link(condition, block);
+                    consume(END, "Expect 'end'");
+                    append(arena.add(AstArena.WHILE, keyword, condition));
+                } catch (ParseError error) {
+                    recover();
+                }
+                continue;
+            }
+            try {
+                int keyword = current;
+                if (match(WHILE)) {
+                    int condition = expr();
+                    consume(DO, "Expect 'do'");
+                    int body = current;
+                    consume(BEGIN, "Expect 'begin'");
+                    open(body, keyword, condition);
+                } else {
+                    append(statement());
+                }
+            } catch (ParseError error) {
+                recover();
+            }
+        }
+    }
+
+    private void open(int begin, int keyword, int condition) {
+        top += FRAME;
+        if (top + FRAME > frames.length) frames = Arrays.copyOf(frames, frames.length * 2);
+        frames[top + BEGIN_AT] = begin;
+        frames[top + FIRST_AT] = AstArena.NONE;
+        frames[top + LAST_AT] = AstArena.NONE;
+        frames[top + KEYWORD_AT] = keyword;
+        frames[top + CONDITION_AT] = condition;
+    }
+
+    private void recover() {
+        if (synchronize()) open(current - 1, AstArena.NONE, AstArena.NONE);
+    }
+
+    // Adds a finished statement, which must be followed by ';', to the
+    // innermost open block.
+    private void append(int statement) {
+        if (!match(SEMICOLON)) throw error("Expect 'end' or ';'");
+        if (frames[top + LAST_AT] == AstArena.NONE) {
+            frames[top + FIRST_AT] = statement;
+        } else {
+            arena.link(frames[top + LAST_AT], statement);
+        }
+        frames[top + LAST_AT] = statement;
+    }
+
+    // The statements other than while, whose body statements parses.
+    private int statement() {
+        int keyword = current;
+        if (match(PRINT)) {
+            return arena.add(AstArena.PRINT, keyword, expr());
+        } else if (match(IDENTIFIER)) {
+            consume(EQUAL, "Expect '='");
+            return arena.add(AstArena.ASSIGNMENT, keyword, expr());
+        }
+        consume(INT, "Expect type");
+        int identifier = current;
+        consume(IDENTIFIER, "Expect identifier");
+        return arena.add(AstArena.DECL, identifier, AstArena.NONE);
+    }
+
+    // The same trees as ParserRec's precedence climbing, built with an
+    // explicit operand and operator stack instead of recursion, so a long
+    // '^' chain or deep parentheses cost heap rather than call stack. An
+    // open parenthesis sits on the operator stack until its ')' arrives.
+    private int expr() {
+        int[] operands = new int[16];
+        int operandCount = 0;
+        int[] operators = new int[16];
+        int operatorCount = 0;
+        while (true) {
+            int token = current;
+            while (match(LEFT_PAREN)) {
+                if (operatorCount == operators.length) operators = Arrays.copyOf(operators, operatorCount * 2);
+                operators[operatorCount++] = token;
+                token = current;
+            }
+            if (!match(NUMBER) && !match(IDENTIFIER)) throw error("Expect identifier or number");
+            if (operandCount == operands.length) operands = Arrays.copyOf(operands, operandCount * 2);
+            operands[operandCount++] = arena.add(AstArena.LITERAL, token, AstArena.NONE);
+
+            while (true) {
+                int precedence = precedence(peekType());
+                // Reduce what binds at least as tightly, except that '^'
+                // waits for its right operand.
+                while (operatorCount > 0) {
+                    int operator = operators[operatorCount - 1];
+                    TokenType type = tokens.type(operator);
+                    if (type == LEFT_PAREN) break;
+                    int top = precedence(type);
+                    if (top < precedence || top == precedence && type == CARET) break;
+                    operatorCount--;
+                    int right = operands[--operandCount];
+                    int left = operands[operandCount - 1];
+                    arena.link(left, right);
+                    operands[operandCount - 1] = arena.add(AstArena.BINARY, operator, left);
+                }
+                if (precedence > 0) {
+                    if (operatorCount == operators.length) operators = Arrays.copyOf(operators, operatorCount * 2);
+                    operators[operatorCount++] = current++;
+                    break;
+                }
+                if (operatorCount == 0) return operands[0];
+                consume(RIGHT_PAREN, "Expect ')' after expression");
+                int paren = operators[--operatorCount];
+                operands[operandCount - 1] = arena.add(AstArena.GROUPING, paren, operands[operandCount - 1]);
+            }
+        }
+    }
+
+    private static int precedence(TokenType type) {
+        switch (type) {
+            case MINUS:
+                return 1;
+            case STAR:
+                return 2;
+            case CARET:
+                return 3;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package tila;
+
+import java.util.Arrays;
+
+// A program's tree stored column-wise in parallel int arrays, the way
+// TokenBuffer stores tokens: a node is an index, with its kind, its first
+// child, its next sibling and the index of its token in the TokenBuffer.
+// Nodes are appended once they are complete, so children always come before
+// their parent and a linear scan of the arena visits them in evaluation order.
+class AstArena {
+    static final int PROGRAM = 0;
+    static final int BLOCK = 1;
+    static final int DECL = 2;
+    static final int ASSIGNMENT = 3;
+    static final int PRINT = 4;
+    static final int WHILE = 5;
+    static final int BINARY = 6;
+    static final int GROUPING = 7;
+    static final int LITERAL = 8;
+
+    static final int NONE = -1;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final TokenBuffer tokens;
+    private int size = 0;
+    private int[] kinds;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    // The token a node is named by: the operator of a BINARY, the keyword of
+    // a PRINT or WHILE, the identifier of a DECL or ASSIGNMENT, the '(' of a
+    // GROUPING and the 'begin' before a PROGRAM's or BLOCK's statements.
+    private int[] tokenIndexes;
+
+    AstArena(TokenBuffer tokens) {
+        this(tokens, Math.max(DEFAULT_CAPACITY, tokens.size() / 2));
+    }
+
+    AstArena(TokenBuffer tokens, int capacity) {
+        this.tokens = tokens;
+        capacity = Math.max(capacity, 16);
+        kinds = new int[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        tokenIndexes = new int[capacity];
+    }
+
+    // Appends a node whose children, if any, are already linked from
+    // firstChild through nextSibling.
+    int add(int kind, int token, int firstChild) {
+        if (size == kinds.length) grow();
+        kinds[size] = kind;
+        firstChildren[size] = firstChild;
+        nextSiblings[size] = NONE;
+        tokenIndexes[size] = token;
+        return size++;
+    }
+
+    void link(int node, int nextSibling) {
+        nextSiblings[node] = nextSibling;
+    }
+
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        tokenIndexes = Arrays.copyOf(tokenIndexes, capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // The root, which is appended last.
+    int root() {
+        return size - 1;
+    }
+
+    TokenBuffer tokens() {
+        return tokens;
+    }
+
+    int kind(int node) {
+        return kinds[node];
+    }
+
+    int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    int token(int node) {
+        return tokenIndexes[node];
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    // Walks the tree from the root without allocating per node; the path
+    // back up is kept on a stack of node indices.
+    class Cursor {
+        private int node = root();
+        private int[] parents = new int[16];
+        private int depth = 0;
+
+        int node() {
+            return node;
+        }
+
+        int kind() {
+            return kinds[node];
+        }
+
+        // The node's token, as an index into tokens().
+        int token() {
+            return tokenIndexes[node];
+        }
+
+        TokenType tokenType() {
+            return tokens.type(tokenIndexes[node]);
+        }
+
+        String lexeme() {
+            return tokens.lexeme(tokenIndexes[node]);
+        }
+
+        long literal() {
+            return tokens.literal(tokenIndexes[node]);
+        }
+
+        // The type a DECL declares, the token before its identifier.
+        String typeLexeme() {
+            return tokens.lexeme(tokenIndexes[node] - 1);
+        }
+
+        int childCount() {
+            int count = 0;
+            for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                count++;
+            }
+            return count;
+        }
+
+        boolean toFirstChild() {
+            int child = firstChildren[node];
+            if (child == NONE) return false;
+            if (depth == parents.length) parents = Arrays.copyOf(parents, depth * 2);
+            parents[depth++] = node;
+            node = child;
+            return true;
+        }
+
+        boolean toNextSibling() {
+            int sibling = nextSiblings[node];
+            if (sibling == NONE) return false;
+            node = sibling;
+            return true;
+        }
+
+        boolean toParent() {
+            if (depth == 0) return false;
+            node = parents[--depth];
+            return true;
+        }
+    }
+
+    // The same text as Expression.toString for the tree ParserRec builds,
+    // walked with a Cursor so that a deep tree cannot overflow the call
+    // stack. What goes between two children of the node at each depth is
+    // kept until its last child is printed.
+    @Override
+    public String toString() {
+        if (size == 0) return "";
+        StringBuilder builder = new StringBuilder();
+        Cursor cursor = cursor();
+        String[] separators = new String[16];
+        int depth = 0;
+        while (true) {
+            open(cursor, builder);
+            if (depth == separators.length) separators = Arrays.copyOf(separators, depth * 2);
+            separators[depth] = separator(cursor);
+            if (cursor.toFirstChild()) {
+                depth++;
+                continue;
+            }
+            while (true) {
+                close(cursor, builder);
+                if (cursor.toNextSibling()) {
+                    builder.append(separators[depth - 1]);
+                    break;
+                }
+                if (!cursor.toParent()) return builder.toString();
+                depth--;
+            }
+        }
+    }
+
+    // The text before a node's first child.
+    private static void open(Cursor node, StringBuilder builder) {
+        switch (node.kind()) {
+            case PROGRAM:
+                builder.append("Program{begin ");
+                break;
+            case BLOCK:
+                builder.append("Block{");
+                break;
+            case DECL:
+                builder.append("Decl{").append(node.typeLexeme()).append(' ').append(node.lexeme()).append('}');
+                break;
+            case ASSIGNMENT:
+                builder.append("Assignment{").append(node.lexeme()).append(" = ");
+                break;
+            case PRINT:
+                builder.append('(').append(node.lexeme()).append(' ');
+                break;
+            case WHILE:
+                builder.append("Loop{while ");
+                break;
+            case BINARY:
+                builder.append('(');
+                break;
+            case GROUPING:
+                builder.append("Grouping{");
+                break;
+            default:
+                builder.append(node.lexeme());
+        }
+    }
+
+    // The text between two children, or null for a node with at most one.
+    private static String separator(Cursor node) {
+        switch (node.kind()) {
+            case BLOCK:
+                return "; ";
+            case WHILE:
+                return " do begin ";
+            case BINARY:
+                return " " + node.lexeme() + " ";
+            default:
+                return null;
+        }
+    }
+
+    // The text after a node's last child.
+    private static void close(Cursor node, StringBuilder builder) {
+        switch (node.kind()) {
+            case PROGRAM:
+                builder.append(" end EOF}");
+                break;
+            case WHILE:
+                builder.append(" end}");
+                break;
+            case BLOCK:
+            case ASSIGNMENT:
+            case GROUPING:
+                builder.append('}');
+                break;
+            case PRINT:
+            case BINARY:
+                builder.append(')');
+                break;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package tila;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Parsed programs kept on disk as AstArenas, keyed by the SHA-256 of the
+// source together with VERSION, so an unchanged file is neither scanned nor
+// parsed again. Each entry holds the arena's nodes, the tokens they
+// name and the identifiers they use; lexemes of numbers are still sliced out
+// of the source. A CRC32 of the rest closes each entry, and an entry that
+// fails it or any check while it is read is deleted and the source parsed
+// again. Entries are touched when used, and once the directory outgrows its
+// budget the least recently used ones are deleted.
+class AstCache {
+    // Part of every key: bump it whenever the grammar, AstArena's node
+    // layout or this file format changes, and old entries stop matching.
+    static final int VERSION = 3;
+    private static final int MAGIC = 0x54494c43;
+    private static final String SUFFIX = ".ast";
+    private static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    AstCache(Path directory) {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    AstCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    // The program in file, from the cache if it has it. Errors are reported
+    // through Tila.error, and a program with errors is not cached.
+    AstArena parse(Path file) throws IOException {
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file)) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CharSequence source = MappedScanner.isAscii(bytes)
+                ? new MappedScanner.AsciiSequence(bytes, 0, bytes.limit())
+                : StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+        Path entry = directory.resolve(key(bytes) + SUFFIX);
+
+        AstArena cached = load(entry, source);
+        if (cached != null) return cached;
+
+        Diagnostics diagnostics = new Diagnostics();
+        TokenBuffer tokens = new Scanner(source, 0, source.length(), diagnostics).scanBuffer();
+        AstArena program = new ArenaParser(tokens, diagnostics).parse();
+        if (diagnostics.isEmpty()) {
+            store(entry, program);
+            evict();
+        } else {
+            diagnostics.report(0);
+        }
+        return program;
+    }
+
+    static String key(ByteBuffer source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, VERSION));
+            digest.update(source.duplicate());
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Null on a miss. An entry from another version or a damaged one is
+    // deleted, and rewritten once the source has been parsed again.
+    private AstArena load(Path entry, CharSequence source) {
+        if (!Files.exists(entry)) return null;
+        try {
+            AstArena program;
+            try (FileChannel channel = FileChannel.open(entry)) {
+                program = read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), source);
+            }
+            if (program != null) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                return program;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Damaged, or unreadable for now; either way it is only a cache.
+        }
+        try {
+            Files.deleteIfExists(entry);
+        } catch (IOException e) {
+            // Another process may have replaced it already.
+        }
+        return null;
+    }
+
+    // Written beside the entry and moved into place, so readers never see
+    // half of one.
+    private void store(Path entry, AstArena program) {
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+            try {
+                try (OutputStream output = Files.newOutputStream(temporary)) {
+                    write(output, program);
+                }
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            // The cache is only an optimization.
+        }
+    }
+
+    private void evict() {
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+                total += Files.size(entry);
+            }
+            if (total <= maxBytes) return;
+            entries.sort(Comparator.comparing(AstCache::lastUsed));
+            for (Path entry : entries) {
+                if (total <= maxBytes) break;
+                total -= Files.size(entry);
+                Files.deleteIfExists(entry);
+            }
+        } catch (IOException e) {
+            // Another process may be evicting the same entries.
+        }
+    }
+
+    private static FileTime lastUsed(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    // The arena's nodes in preorder, walked with a Cursor, then only the
+    // tokens they name (a declaration also names the type before its
+    // identifier), then the identifiers past the keywords in symbol id order.
+    // A node is its kind, its number of children and its token index as a
+    // varint distance from the previous node's; source offsets are likewise
+    // relative to the previous one.
+    static void write(OutputStream output, AstArena program) throws IOException {
+        TokenBuffer tokens = program.tokens();
+        int[] remap = new int[tokens.size()];
+        AstArena.Cursor cursor = program.cursor();
+        do {
+            remap[cursor.token()] = 1;
+            if (cursor.kind() == AstArena.DECL) remap[cursor.token() - 1] = 1;
+        } while (next(cursor));
+        int used = 0;
+        for (int token = 0; token < remap.length; token++) {
+            remap[token] = remap[token] != 0 ? used++ : -1;
+        }
+
+        CRC32 checksum = new CRC32();
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(output, checksum)));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(program.size());
+        int previous = 0;
+        cursor = program.cursor();
+        do {
+            int token = remap[cursor.token()];
+            data.writeByte(cursor.kind());
+            writeVarint(data, cursor.childCount());
+            writeVarint(data, zigzag(token - previous));
+            previous = token;
+        } while (next(cursor));
+
+        data.writeInt(used);
+        int start = 0;
+        for (int token = 0; token < remap.length; token++) {
+            if (remap[token] < 0) continue;
+            TokenType type = tokens.type(token);
+            data.writeByte(type.ordinal());
+            if (TokenBuffer.hasSymbol(type)) {
+                writeVarint(data, (int) tokens.literal(token));
+            } else {
+                writeVarint(data, tokens.start(token) - start);
+                writeVarint(data, tokens.length(token));
+                if (type == TokenType.NUMBER) writeVarint(data, tokens.literal(token));
+                start = tokens.start(token);
+            }
+        }
+
+        SymbolTable symbols = tokens.symbols();
+        data.writeInt(symbols.size() - SymbolTable.KEYWORD_COUNT);
+        for (int symbol = SymbolTable.KEYWORD_COUNT; symbol < symbols.size(); symbol++) {
+            byte[] name = symbols.name(symbol).getBytes(StandardCharsets.UTF_8);
+            writeVarint(data, name.length);
+            data.write(name);
+        }
+        data.flush();
+        data.writeInt((int) checksum.getValue());
+        data.flush();
+    }
+
+    // Null if the entry was written by another version. Nothing in the entry
+    // is trusted: every count is checked against the bytes left before
+    // anything is allocated for it, and every child count, index and type
+    // against what it refers to, so a damaged entry fails here and not later.
+    static AstArena read(ByteBuffer data, CharSequence source) throws IOException {
+        check(data.remaining() >= 3 * Integer.BYTES);
+        if (data.getInt() != MAGIC || data.getInt() != VERSION) return null;
+        int checked = data.limit() - Integer.BYTES;
+        CRC32 checksum = new CRC32();
+        checksum.update(data.duplicate().position(0).limit(checked));
+        check((int) checksum.getValue() == data.getInt(checked));
+        data.limit(checked);
+
+        // A node takes at least three bytes, a token two and a name one.
+        int nodes = count(data, 3);
+        check(nodes > 0);
+        int[] kinds = new int[nodes];
+        int[] firstChildren = new int[nodes];
+        int[] nextSiblings = new int[nodes];
+        int[] tokenIndexes = new int[nodes];
+        readTree(data, kinds, firstChildren, nextSiblings, tokenIndexes);
+
+        // Cached programs had no errors, so lines and columns are not kept;
+        // symbol ids are resolved once every identifier has been interned.
+        int used = count(data, 2);
+        TokenType[] values = TokenType.values();
+        TokenType[] types = new TokenType[used];
+        long[] literals = new long[used];
+        int[] starts = new int[used];
+        int[] lengths = new int[used];
+        long start = 0;
+        for (int token = 0; token < used; token++) {
+            int type = data.get();
+            check(type >= 0 && type < values.length);
+            types[token] = values[type];
+            if (TokenBuffer.hasSymbol(types[token])) {
+                literals[token] = readVarint(data);
+            } else {
+                start += readVarint(data);
+                long length = readVarint(data);
+                check(start + length <= source.length());
+                lengths[token] = (int) length;
+                if (types[token] == TokenType.NUMBER) literals[token] = readVarint(data);
+                starts[token] = (int) start;
+            }
+        }
+        for (int node = 0; node < nodes; node++) {
+            int first = kinds[node] == AstArena.DECL ? 1 : 0;
+            check(tokenIndexes[node] >= first && tokenIndexes[node] < used);
+        }
+
+        SymbolTable symbols = new SymbolTable();
+        int names = count(data, 1);
+        for (int i = 0; i < names; i++) {
+            long length = readVarint(data);
+            check(length <= data.remaining());
+            byte[] name = new byte[(int) length];
+            data.get(name);
+            String identifier = new String(name, StandardCharsets.UTF_8);
+            check(symbols.intern(identifier, 0, identifier.length()) == SymbolTable.KEYWORD_COUNT + i);
+        }
+        check(!data.hasRemaining());
+
+        TokenBuffer tokens = new TokenBuffer(source, used, symbols);
+        for (int token = 0; token < used; token++) {
+            TokenType type = types[token];
+            int length = lengths[token];
+            if (TokenBuffer.hasSymbol(type)) {
+                check(literals[token] >= 0 && literals[token] < symbols.size());
+                length = symbols.name((int) literals[token]).length();
+            }
+            tokens.add(type, starts[token], length, 0, 0, literals[token]);
+        }
+        AstArena program = new AstArena(tokens, nodes);
+        for (int node = 0; node < nodes; node++) {
+            program.add(kinds[node], tokenIndexes[node], firstChildren[node]);
+            program.link(node, nextSiblings[node]);
+        }
+        return program;
+    }
+
+    // Moves to the next node in preorder, false after the last one.
+    private static boolean next(AstArena.Cursor cursor) {
+        if (cursor.toFirstChild()) return true;
+        while (!cursor.toNextSibling()) {
+            if (!cursor.toParent()) return false;
+        }
+        return true;
+    }
+
+    // Rebuilds the columns in the order ArenaParser appends them, children
+    // before their parent, from nodes written in preorder. A node is
+    // appended once its last child is; until then it waits on a stack with
+    // the children it still needs and the last one it got. Every kind must
+    // have the children it is printed with, the root must be the PROGRAM
+    // and must complete with the last node.
+    private static void readTree(ByteBuffer data, int[] kinds, int[] firstChildren, int[] nextSiblings,
+                                 int[] tokenIndexes) throws IOException {
+        int nodes = kinds.length;
+        // Per open node: kind, token, children still to come, first child, last child.
+        int[] stack = new int[5 * 16];
+        int top = 0;
+        int appended = 0;
+        int previous = 0;
+        for (int read = 0; read < nodes; read++) {
+            int kind = data.get();
+            check(kind >= AstArena.PROGRAM && kind <= AstArena.LITERAL);
+            check((kind == AstArena.PROGRAM) == (read == 0));
+            long children = readVarint(data);
+            check(children == childCount(kind, (int) Math.min(children, nodes)) && children < nodes - read);
+            previous += unzigzag((int) readVarint(data));
+            if (top + 5 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = kind;
+            stack[top++] = previous;
+            stack[top++] = (int) children;
+            stack[top++] = AstArena.NONE;
+            stack[top++] = AstArena.NONE;
+            while (top > 0 && stack[top - 3] == 0) {
+                int last = stack[--top];
+                int first = stack[--top];
+                top -= 1;
+                int token = stack[--top];
+                int node = appended++;
+                kinds[node] = stack[--top];
+                firstChildren[node] = first;
+                nextSiblings[node] = AstArena.NONE;
+                tokenIndexes[node] = token;
+                if (top == 0) {
+                    check(appended == nodes);
+                    break;
+                }
+                if (stack[top - 1] == AstArena.NONE) {
+                    stack[top - 2] = node;
+                } else {
+                    nextSiblings[stack[top - 1]] = node;
+                }
+                stack[top - 1] = node;
+                stack[top - 3]--;
+            }
+        }
+        check(top == 0);
+    }
+
+    private static int childCount(int kind, int children) {
+        switch (kind) {
+            case AstArena.BLOCK:
+                return children;
+            case AstArena.DECL:
+            case AstArena.LITERAL:
+                return 0;
+            case AstArena.WHILE:
+            case AstArena.BINARY:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    // A count read from the entry, which cannot be more than the bytes left
+    // if each of its items takes at least minimum bytes.
+    private static int count(ByteBuffer data, int minimum) throws IOException {
+        int count = data.getInt();
+        check(count >= 0 && count <= data.remaining() / minimum);
+        return count;
+    }
+
+    private static void check(boolean condition) throws IOException {
+        if (!condition) throw new IOException("damaged cache entry");
+    }
+
+    private static void writeVarint(DataOutputStream data, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            data.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static long readVarint(ByteBuffer data) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            check(shift < 63);
+            byte b = data.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,235 @@
+package tila;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+// Writes a tree straight into an Appendable, or as JSON into a Jackson
+// JsonGenerator, without building the text of any subtree first. The walk is
+// iterative: visiting a node writes what comes before its first child and
+// pushes the rest, children and the text between them, onto a stack in
+// reverse order. The cost is the size of the output, whatever the depth.
+class AstWriter implements Expression.Visitor<Void> {
+    // Stack items besides Expressions, which are visited, and Strings, which
+    // are written as they are, or as field names in JSON.
+    private static final Object END_OBJECT = new Object();
+    private static final Object END_ARRAY = new Object();
+
+    private final Appendable out;
+    private final JsonGenerator json;
+    private final Deque<Object> stack = new ArrayDeque<>();
+
+    AstWriter(Appendable out) {
+        this.out = out;
+        this.json = null;
+    }
+
+    AstWriter(JsonGenerator json) {
+        this.out = null;
+        this.json = json;
+    }
+
+    void print(Expression root) throws IOException {
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Object item = stack.pop();
+            if (item instanceof Expression) {
+                try {
+                    ((Expression) item).accept(this);
+                } catch (WriteError e) {
+                    throw (IOException) e.getCause();
+                }
+            } else if (item == END_OBJECT) {
+                json.writeEndObject();
+            } else if (item == END_ARRAY) {
+                json.writeEndArray();
+            } else if (json != null) {
+                json.writeFieldName((String) item);
+            } else {
+                out.append(item.toString());
+            }
+        }
+        if (json != null) json.flush();
+    }
+
+    static String toString(Expression root) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            new AstWriter(builder).print(root);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+
+    // Writes the text before a node's first child, or in JSON opens the
+    // node's object and closes it once everything pushed after this is done.
+    private void open(String text, String type) {
+        try {
+            if (json == null) {
+                out.append(text);
+            } else {
+                json.writeStartObject();
+                json.writeStringField("type", type);
+                stack.push(END_OBJECT);
+            }
+        } catch (IOException e) {
+            throw new WriteError(e);
+        }
+    }
+
+    // Pushes the text after a node's last child; JSON needs none.
+    private void close(String text) {
+        if (json == null) stack.push(text);
+    }
+
+    // Pushes a child with the text before it, or with its field name.
+    private void child(String text, String field, Object child) {
+        stack.push(child);
+        stack.push(json == null ? text : field);
+    }
+
+    private void field(String name, Token token) {
+        try {
+            if (token.type == TokenType.NUMBER) {
+                json.writeNumberField(name, token.value);
+            } else {
+                json.writeStringField(name, token.lexeme);
+            }
+        } catch (IOException e) {
+            throw new WriteError(e);
+        }
+    }
+
+    private void list(String separator, String field, List<Expression> items) {
+        if (json != null) {
+            try {
+                json.writeArrayFieldStart(field);
+            } catch (IOException e) {
+                throw new WriteError(e);
+            }
+            stack.push(END_ARRAY);
+        }
+        for (int i = items.size() - 1; i >= 0; i--) {
+            stack.push(items.get(i));
+            if (json == null && i > 0) stack.push(separator);
+        }
+    }
+
+    @Override
+    public Void visitAssignment(Expression.Assignment node) {
+        open("Assignment{", "Assignment");
+        if (json != null) field("name", node.id);
+        close("}");
+        child(node.id + " = ", "value", node.expr);
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(Expression.Binary node) {
+        open("(", "Binary");
+        if (json != null) field("operator", node.operator);
+        close(")");
+        child(" " + node.operator + " ", "right", node.right);
+        child("", "left", node.left);
+        return null;
+    }
+
+    @Override
+    public Void visitGrouping(Expression.Grouping node) {
+        open("Grouping{", "Grouping");
+        close("}");
+        child("", "expression", node.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitProgram(Expression.Program node) {
+        open("Program{begin ", "Program");
+        close(" end EOF}");
+        child("", "statements", node.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteral(Expression.Literal node) {
+        if (json == null) {
+            stack.push(String.valueOf(node.value));
+        } else if (node.value instanceof Token) {
+            open(null, "Literal");
+            field("value", (Token) node.value);
+        } else {
+            open(null, "Literal");
+            try {
+                json.writeStringField("value", String.valueOf(node.value));
+            } catch (IOException e) {
+                throw new WriteError(e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitEpsilon(Expression.Epsilon node) {
+        open("ε", "Epsilon");
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(Expression.Unary node) {
+        open("(", "Unary");
+        if (json != null) field("operator", node.operator);
+        close(")");
+        child(node.operator + " ", "right", node.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCalculation(Expression.Calculation node) {
+        open("Calculation{", "Calculation");
+        if (json != null) field("operator", node.operator);
+        close("}");
+        child(" ", "right", node.right);
+        child(node.operator + " ", "middle", node.middle);
+        return null;
+    }
+
+    @Override
+    public Void visitBlock(Expression.Block node) {
+        open("Block{", "Block");
+        close("}");
+        list("; ", "statements", node.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitWhile(Expression.While node) {
+        open("Loop{while ", "While");
+        close(" end}");
+        child(" do begin ", "body", node.body);
+        child("", "condition", node.condition);
+        return null;
+    }
+
+    @Override
+    public Void visitDecl(Expression.Decl node) {
+        open("Decl{", "Decl");
+        if (json != null) {
+            field("declared", node.type);
+            field("name", node.identifier);
+        }
+        close(node.type + " " + node.identifier + "}");
+        return null;
+    }
+
+    // Carries an IOException out through the visitor, whose methods cannot
+    // throw it; print unwraps it again.
+    private static class WriteError extends RuntimeException {
+        WriteError(IOException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package tila;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Times the scan + parse paths against each other on a generated program:
+//   java -cp out/ tila.Benchmark [statements] [iterations]
+public class Benchmark {
+    interface Run {
+        Expression parse(FileChannel channel) throws IOException;
+    }
+
+    interface Parse {
+        Expression parse(TokenCursor tokens);
+    }
+
+    interface Scan {
+        TokenBuffer scan(CharSequence source);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path file = Files.createTempFile("tila-bench", ".tila");
+        try {
+            generate(file, statements);
+            System.out.printf("%d statements, %d bytes%n", statements, Files.size(file));
+            // Parsers alone, over tokens scanned once up front.
+            String source = Files.readString(file);
+            TokenBuffer scanned = new Scanner(source).scanBuffer();
+            compare(scanned, new TableLexer(source, new Diagnostics()).scanBuffer());
+            System.out.printf("%-12s %8.1f B/token%n", "overhead", AllocationTest.overhead(scanned));
+            // A one-digit edit in the middle, made and then undone each round.
+            IncrementalParser incremental = new IncrementalParser(source, new Diagnostics());
+            int edit = source.indexOf("print a - ", source.length() / 2) + "print a - ".length();
+            for (int i = 0; i < iterations; i++) {
+                scan("scanner", source, text -> new Scanner(text).scanBuffer());
+                scan("dfa", source, text -> new TableLexer(text, new Diagnostics()).scanBuffer());
+                time("sequential", file, channel -> new ParserRec(MappedScanner.scan(channel)).parse());
+                time("streaming", file, channel -> new ParserRec(new StreamScanner(channel).cursor()).parse());
+                time("pipeline", file, channel -> {
+                    try (TokenPipeline tokens = new TokenPipeline(new StreamScanner(channel, new Diagnostics()), 4096)) {
+                        return new ParserRec(tokens.cursor()).parse();
+                    }
+                });
+                time("recursive", scanned, cursor -> new ParserRec(cursor).parse());
+                time("shared", scanned, cursor -> new ParserRec(cursor, null, new NodeFactory()).parse());
+                time("parallel", scanned, cursor -> new ParallelParser(scanned).parse());
+                time("table", scanned, cursor -> new Parser(cursor).parse());
+                time("generated", scanned, cursor -> new GeneratedParser(cursor).parse());
+                long start = System.nanoTime();
+                Expression edited = incremental.edit(edit, 0, "1");
+                report("incremental", System.nanoTime() - start, edited);
+                incremental.edit(edit, 1, "");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    static void generate(Path file, int statements) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+            writer.println("begin");
+            writer.println("    int a;");
+            writer.println("    int b;");
+            for (int i = 0; i < statements; i++) {
+                switch (i % 4) {
+                    case 0:
+                        writer.println("    a = (b - 2 * c) * d ^ c;");
+                        break;
+                    case 1:
+                        writer.println("    print a - " + i + ";");
+                        break;
+                    case 2:
+                        writer.println("    while b - 2 do begin print b; end;");
+                        break;
+                    default:
+                        writer.println("    b = a * " + i + " - (c ^ 2);");
+                        break;
+                }
+            }
+            writer.println("end");
+        }
+    }
+
+    private static void time(String name, Path file, Run run) throws IOException {
+        long start = System.nanoTime();
+        Expression program;
+        try (FileChannel channel = FileChannel.open(file)) {
+            program = run.parse(channel);
+        }
+        report(name, System.nanoTime() - start, program);
+    }
+
+    private static void time(String name, TokenBuffer tokens, Parse parse) {
+        long start = System.nanoTime();
+        Expression program = parse.parse(tokens.cursor());
+        report(name, System.nanoTime() - start, program);
+    }
+
+    // Scanning alone, to set the hand-written Scanner against TableLexer.
+    private static void scan(String name, String source, Scan scan) {
+        long start = System.nanoTime();
+        TokenBuffer tokens = scan.scan(source);
+        long elapsed = System.nanoTime() - start;
+        if (tokens.type(tokens.size() - 1) != TokenType.EOF) throw new IllegalStateException(name + " failed to scan");
+        System.out.printf("%-12s %8.1f ms%n", name, elapsed / 1e6);
+    }
+
+    // TableLexer is meant as a drop-in for Scanner, so it has to produce
+    // the same tokens down to their positions and values.
+    private static void compare(TokenBuffer expected, TokenBuffer actual) {
+        if (actual.size() != expected.size()) {
+            throw new IllegalStateException(String.format("TableLexer produced %d tokens, Scanner %d", actual.size(), expected.size()));
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (actual.type(i) != expected.type(i) || actual.start(i) != expected.start(i)
+                    || actual.length(i) != expected.length(i) || actual.line(i) != expected.line(i)
+                    || actual.column(i) != expected.column(i) || actual.literal(i) != expected.literal(i)) {
+                throw new IllegalStateException("TableLexer and Scanner differ at token " + i + ": "
+                        + actual.token(i) + " instead of " + expected.token(i));
+            }
+        }
+    }
+
+    private static void report(String name, long elapsed, Expression program) {
+        if (program == null) throw new IllegalStateException(name + " failed to parse");
+        System.out.printf("%-12s %8.1f ms%n", name, elapsed / 1e6);
+    }
+}
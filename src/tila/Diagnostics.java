@@ -0,0 +1,75 @@
+package tila;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Collects errors instead of printing them right away, for phases that run
+// out of order (parallel chunks) or need to keep going after an error.
+class Diagnostics {
+    static class Diagnostic {
+        final int line;
+        final int column;
+        final String message;
+        // Where in the source the error is, or -1 if it was not recorded.
+        final int offset;
+
+        Diagnostic(int line, int column, String message) {
+            this(line, column, message, -1);
+        }
+
+        Diagnostic(int line, int column, String message, int offset) {
+            this.line = line;
+            this.column = column;
+            this.message = message;
+            this.offset = offset;
+        }
+
+        @Override
+        public String toString() {
+            return line + ":" + column + ": " + message;
+        }
+    }
+
+    private final List<Diagnostic> errors = new ArrayList<>();
+
+    void error(int line, int column, String message) {
+        errors.add(new Diagnostic(line, column, message));
+    }
+
+    void error(int line, int column, String message, int offset) {
+        errors.add(new Diagnostic(line, column, message, offset));
+    }
+
+    List<Diagnostic> errors() {
+        return errors;
+    }
+
+    boolean isEmpty() {
+        return errors.isEmpty();
+    }
+
+    // Reports these errors and other's together in source order, these
+    // first where both have one at the same place, for a scanner and a
+    // parser that ran on different threads over the same source. These
+    // errors past stop, the token the parser stopped at, are left out: how
+    // far the scanner got beyond it depends on timing, and a scanner the
+    // parser pulled from would not have reached them.
+    void report(Diagnostics other, Token stop) {
+        List<Diagnostic> merged = new ArrayList<>();
+        for (Diagnostic error : errors) {
+            if (error.line < stop.line || error.line == stop.line && error.column <= stop.column) merged.add(error);
+        }
+        merged.addAll(other.errors);
+        merged.sort(Comparator.comparingInt((Diagnostic error) -> error.line).thenComparingInt(error -> error.column));
+        for (Diagnostic error : merged) {
+            Tila.error(error.line, error.column, error.message);
+        }
+    }
+
+    void report(int lineOffset) {
+        for (Diagnostic error : errors) {
+            Tila.error(error.line + lineOffset, error.column, error.message);
+        }
+    }
+}
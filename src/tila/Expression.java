@@ -1,556 +1,484 @@
 package tila;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
+// Generated by GenerateAst from GenerateAst.SPEC. Do not edit.
 abstract class Expression {
-    interface Visitor<R> {
-        R visitAssignExpr(Assignment expr);
-
-        R visitBinaryExpr(Binary expr);
-
-        R visitCallExpr(Call expr);
-
-        R visitGetExpr(Get expr);
-
-        R visitGroupingExpr(Grouping expr);
-
-        R visitProgramExpr(Program expr);
-
-        R visitStatementExpr(Statements expr);
-
-        R visitLiteralExpr(Literal expr);
-
-        R visitEpsilonExpr(Epsilon expr);
-
-        R visitLogicalExpr(Logical expr);
-
-        R visitSetExpr(Set expr);
-
-        R visitSuperExpr(Super expr);
-
-        R visitThisExpr(This expr);
-
-        R visitUnaryExpr(Unary expr);
-
-        R visitDoubleUnaryExpr(Calculation expr);
-
-        R visitVariableExpr(Variable expr);
+    static final int PROGRAM = 0;
+    static final int BLOCK = 1;
+    static final int DECL = 2;
+    static final int ASSIGNMENT = 3;
+    static final int WHILE = 4;
+    static final int UNARY = 5;
+    static final int BINARY = 6;
+    static final int CALCULATION = 7;
+    static final int GROUPING = 8;
+    static final int LITERAL = 9;
+    static final int EPSILON = 10;
+    static final int KINDS = 11;
 
-        R visitPairExpr(Pair expr);
-
-        R visitBlockStmt(Block stmt);
-
-        R visitClassStmt(Class stmt);
-
-        R visitExpressionStmt(Expr stmt);
-
-        R visitFunctionStmt(Function stmt);
-
-        R visitIfStmt(If stmt);
-
-        R visitPrintStmt(Print stmt);
-
-        R visitReturnStmt(Return stmt);
-
-        R visitVarStmt(Var stmt);
+    interface Visitor<R> {
+        R visitProgram(Program node);
+        R visitBlock(Block node);
+        R visitDecl(Decl node);
+        R visitAssignment(Assignment node);
+        R visitWhile(While node);
+        R visitUnary(Unary node);
+        R visitBinary(Binary node);
+        R visitCalculation(Calculation node);
+        R visitGrouping(Grouping node);
+        R visitLiteral(Literal node);
+        R visitEpsilon(Epsilon node);
+    }
 
-        R visitWhileStmt(While stmt);
+    // One of the constants above, to switch on instead of testing classes.
+    final int kind;
 
-        R visitDecl(Decl stmt);
+    // Token span [first, end), as recorded by ParserRec. It is relative to
+    // the first token of the statement the node belongs to (a statement's own
+    // span starts at 0), so a statement that moves keeps its whole subtree.
+    // Where each statement starts is kept by its Block. Spans are not part of
+    // a node's structure: equal trees may sit at different places.
+    int first;
+    int end;
 
+    Expression(int kind) {
+        this.kind = kind;
     }
 
-    // Nested Expr classes here...
     abstract <R> R accept(Visitor<R> visitor);
 
-    static class Assignment extends Expression {
-        Assignment(Token id, Expression expr) {
-            this.id = id;
-            this.expr = expr;
-        }
-
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitAssignExpr(this);
-        }
-
-        final Token id;
-        final Expression expr;
-
-        @Override
-        public String toString() {
-            return String.format("Assignment{%s = %s}", id, expr);
-        }
+    // The child nodes in field order, each element of a list counting as
+    // one, so a walk can keep its own stack instead of recursing.
+    abstract int childCount();
+
+    abstract Expression child(int index);
+
+    // Structural equality over whole trees, spans left out. Both walks keep
+    // an explicit stack, so a deep tree costs heap rather than call stack;
+    // each node compares and hashes only its fields besides children.
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Expression)) return false;
+        Expression[] stack = new Expression[32];
+        int top = 0;
+        stack[top++] = this;
+        stack[top++] = (Expression) o;
+        while (top > 0) {
+            Expression right = stack[--top];
+            Expression left = stack[--top];
+            if (left == right) continue;
+            if (left == null || right == null || left.kind != right.kind) return false;
+            int count = left.childCount();
+            if (count != right.childCount() || !left.sameFields(right)) return false;
+            if (top + 2 * count > stack.length) stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + 2 * count));
+            for (int i = count - 1; i >= 0; i--) {
+                stack[top++] = left.child(i);
+                stack[top++] = right.child(i);
+            }
+        }
+        return true;
     }
 
-    static class Binary extends Expression {
-        Binary(Expression left, Token operator, Expression right) {
-            this.left = left;
-            this.operator = operator;
-            this.right = right;
-        }
-
-        @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitBinaryExpr(this);
-        }
-
-        final Expression left;
-        final Token operator;
-        final Expression right;
+    // Hashes the nodes in preorder with their child counts, which fixes
+    // the shape of the tree.
+    @Override
+    public final int hashCode() {
+        int hash = 0;
+        Expression[] stack = new Expression[32];
+        int top = 0;
+        stack[top++] = this;
+        while (top > 0) {
+            Expression node = stack[--top];
+            if (node == null) {
+                hash = 31 * hash;
+                continue;
+            }
+            int count = node.childCount();
+            hash = 31 * (31 * (31 * hash + node.kind) + node.fieldHash()) + count;
+            if (top + count > stack.length) stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + count));
+            for (int i = count - 1; i >= 0; i--) {
+                stack[top++] = node.child(i);
+            }
+        }
+        return hash;
     }
 
-    static class Call extends Expression {
-        Call(Expression callee, Token paren, List<Expression> arguments) {
-            this.callee = callee;
-            this.paren = paren;
-            this.arguments = arguments;
-        }
+    // Whether node, of the same kind, has equal fields besides children.
+    boolean sameFields(Expression node) {
+        return true;
+    }
 
-        @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitCallExpr(this);
-        }
+    int fieldHash() {
+        return 0;
+    }
 
-        final Expression callee;
-        final Token paren;
-        final List<Expression> arguments;
+    // Written by AstWriter, so printing a deep tree costs only its output.
+    @Override
+    public String toString() {
+        return AstWriter.toString(this);
     }
 
-    static class Get extends Expression {
-        Get(Expression object, Token name) {
-            this.object = object;
-            this.name = name;
+    static class Program extends Expression {
+        Program(Expression statements) {
+            super(PROGRAM);
+            this.statements = statements;
         }
 
+        final Expression statements;
+
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitGetExpr(this);
-        }
-
-        final Expression object;
-        final Token name;
-    }
-
-    static class Grouping extends Expression {
-        Grouping(Expression expression) {
-            this.expression = expression;
+            return visitor.visitProgram(this);
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitGroupingExpr(this);
+        int childCount() {
+            return 1;
         }
 
-        final Expression expression;
-
         @Override
-        public String toString() {
-            return String.format("Grouping{%s}", expression);
+        Expression child(int index) {
+            if (index == 0) return statements;
+            throw new IndexOutOfBoundsException("child " + index);
         }
     }
 
-
-    static class Program extends Expression {
-        Program(Expression statements) {
+    static class Block extends Expression {
+        Block(List<Expression> statements, int[] starts) {
+            super(BLOCK);
             this.statements = statements;
+            this.starts = starts;
         }
 
+        final List<Expression> statements;
+        final int[] starts;
+
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitProgramExpr(this);
+            return visitor.visitBlock(this);
         }
 
-        final Expression statements;
+        @Override
+        int childCount() {
+            return statements.size();
+        }
 
         @Override
-        public String toString() {
-            return "Program{begin " + statements + " end EOF}";
+        Expression child(int index) {
+            if (index < statements.size()) return statements.get(index);
+            throw new IndexOutOfBoundsException("child " + index);
         }
     }
 
-    static class Statements extends Expression {
-        Statements(Expression statement, Expression statements) {
-            this.statement = statement;
-            this.statements = statements;
+    static class Decl extends Expression {
+        Decl(Token type, Token identifier) {
+            super(DECL);
+            this.type = type;
+            this.identifier = identifier;
         }
 
+        final Token type;
+        final Token identifier;
+
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitStatementExpr(this);
+            return visitor.visitDecl(this);
         }
 
-        final Expression statements;
-        final Expression statement;
-
         @Override
-        public String toString() {
-            return String.format("Statements{%s; %s}", statement, statements);
+        int childCount() {
+            return 0;
         }
-    }
 
-    static class Literal extends Expression {
-        Literal(Object value) {
-            this.value = value;
+        @Override
+        Expression child(int index) {
+            throw new IndexOutOfBoundsException("child " + index);
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitLiteralExpr(this);
+        boolean sameFields(Expression node) {
+            Decl other = (Decl) node;
+            return Objects.equals(type, other.type)
+                    && Objects.equals(identifier, other.identifier);
         }
 
-        final Object value;
-
         @Override
-        public String toString() {
-            return value.toString();
+        int fieldHash() {
+            int hash = 0;
+            hash = 31 * hash + Objects.hashCode(type);
+            hash = 31 * hash + Objects.hashCode(identifier);
+            return hash;
         }
     }
 
-    static class Epsilon extends Expression {
-        Epsilon() {
+    static class Assignment extends Expression {
+        Assignment(Token id, Expression expr) {
+            super(ASSIGNMENT);
+            this.id = id;
+            this.expr = expr;
         }
 
+        final Token id;
+        final Expression expr;
+
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitEpsilonExpr(this);
+            return visitor.visitAssignment(this);
         }
 
         @Override
-        public String toString() {
-            return "ε";
-        }
-    }
-
-    static class Logical extends Expression {
-        Logical(Expression left, Token operator, Expression right) {
-            this.left = left;
-            this.operator = operator;
-            this.right = right;
+        int childCount() {
+            return 1;
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitLogicalExpr(this);
+        Expression child(int index) {
+            if (index == 0) return expr;
+            throw new IndexOutOfBoundsException("child " + index);
         }
 
-        final Expression left;
-        final Token operator;
-        final Expression right;
-    }
-
-    static class Set extends Expression {
-        Set(Expression object, Token name, Expression value) {
-            this.object = object;
-            this.name = name;
-            this.value = value;
+        @Override
+        boolean sameFields(Expression node) {
+            Assignment other = (Assignment) node;
+            return Objects.equals(id, other.id);
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitSetExpr(this);
+        int fieldHash() {
+            return Objects.hashCode(id);
         }
-
-        final Expression object;
-        final Token name;
-        final Expression value;
     }
 
-    static class Super extends Expression {
-        Super(Token keyword, Token method) {
-            this.keyword = keyword;
-            this.method = method;
+    static class While extends Expression {
+        While(Expression condition, Expression body) {
+            super(WHILE);
+            this.condition = condition;
+            this.body = body;
         }
 
+        final Expression condition;
+        final Expression body;
+
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitSuperExpr(this);
+            return visitor.visitWhile(this);
         }
 
-        final Token keyword;
-        final Token method;
-    }
-
-
-    static class This extends Expression {
-        This(Token keyword) {
-            this.keyword = keyword;
+        @Override
+        int childCount() {
+            return 2;
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitThisExpr(this);
+        Expression child(int index) {
+            if (index == 0) return condition;
+            if (index == 1) return body;
+            throw new IndexOutOfBoundsException("child " + index);
         }
-
-        final Token keyword;
     }
 
     static class Unary extends Expression {
         Unary(Token operator, Expression right) {
+            super(UNARY);
             this.operator = operator;
             this.right = right;
         }
 
-        @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitUnaryExpr(this);
-        }
-
         final Token operator;
         final Expression right;
 
         @Override
-        public String toString() {
-            return String.format("(%s %s)", operator, right);
-        }
-    }
-
-    static class Calculation extends Expression {
-        Calculation(Token operator, Expression middle, Expression right) {
-            this.operator = operator;
-            this.middle = middle;
-            this.right = right;
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitUnary(this);
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitDoubleUnaryExpr(this);
+        int childCount() {
+            return 1;
         }
 
-        final Token operator;
-        final Expression middle;
-        final Expression right;
-
         @Override
-        public String toString() {
-            return String.format("Calculation{%s %s %s}", operator, middle, right);
+        Expression child(int index) {
+            if (index == 0) return right;
+            throw new IndexOutOfBoundsException("child " + index);
         }
-    }
 
-    static class Variable extends Expression {
-        Variable(Token name) {
-            this.name = name;
+        @Override
+        boolean sameFields(Expression node) {
+            Unary other = (Unary) node;
+            return Objects.equals(operator, other.operator);
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitVariableExpr(this);
+        int fieldHash() {
+            return Objects.hashCode(operator);
         }
-
-        final Token name;
     }
 
-    static class Pair extends Expression {
-        Pair(Expression left, Expression right) {
+    static class Binary extends Expression {
+        Binary(Expression left, Token operator, Expression right) {
+            super(BINARY);
             this.left = left;
+            this.operator = operator;
             this.right = right;
         }
 
-        @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitPairExpr(this);
-        }
-
         final Expression left;
+        final Token operator;
         final Expression right;
 
         @Override
-        public String toString() {
-            return String.format("Pair{%s %s}", left, right);
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitBinary(this);
         }
-    }
 
-    static class Expr extends Pair {
-        Expr(Expression left, Expression right) {
-            super(left, right);
-        }
         @Override
-        public String toString() {
-            return String.format("Expr{%s %s}", left, right);
+        int childCount() {
+            return 2;
         }
-    }
 
-    static class Expr1 extends Pair {
-        Expr1(Expression left, Expression right) {
-            super(left, right);
-        }
         @Override
-        public String toString() {
-            return String.format("Expr1{%s %s}", left, right);
+        Expression child(int index) {
+            if (index == 0) return left;
+            if (index == 1) return right;
+            throw new IndexOutOfBoundsException("child " + index);
         }
-    }
 
-    static class Expr3 extends Pair {
-        Expr3(Expression left, Expression right) {
-            super(left, right);
-        }
         @Override
-        public String toString() {
-            return String.format("Expr3{%s %s}", left, right);
-        }
-    }
-
-
-    static class Block extends Expression {
-        Block(List<Expression> statements) {
-            this.statements = statements;
+        boolean sameFields(Expression node) {
+            Binary other = (Binary) node;
+            return Objects.equals(operator, other.operator);
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitBlockStmt(this);
+        int fieldHash() {
+            return Objects.hashCode(operator);
         }
-
-        final List<Expression> statements;
     }
 
-    static class Class extends Expression {
-        Class(Token name,
-              Expression.Variable superclass,
-              List<Function> methods) {
-            this.name = name;
-            this.superclass = superclass;
-            this.methods = methods;
+    static class Calculation extends Expression {
+        Calculation(Token operator, Expression middle, Expression right) {
+            super(CALCULATION);
+            this.operator = operator;
+            this.middle = middle;
+            this.right = right;
         }
 
+        final Token operator;
+        final Expression middle;
+        final Expression right;
+
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitClassStmt(this);
+            return visitor.visitCalculation(this);
         }
 
-        final Token name;
-        final Expression.Variable superclass;
-        final List<Function> methods;
-    }
-
-//    static class Expr extends Expression {
-//        Expr(Expression expression) {
-//            this.expression = expression;
-//        }
-//
-//        @Override
-//        <R> R accept(Visitor<R> visitor) {
-//            return visitor.visitExpressionStmt(this);
-//        }
-//
-//        final Expression expression;
-//    }
-
-    static class Function extends Expression {
-        Function(Token name, List<Token> params, List<Expression> body) {
-            this.name = name;
-            this.params = params;
-            this.body = body;
+        @Override
+        int childCount() {
+            return 2;
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitFunctionStmt(this);
+        Expression child(int index) {
+            if (index == 0) return middle;
+            if (index == 1) return right;
+            throw new IndexOutOfBoundsException("child " + index);
         }
 
-        final Token name;
-        final List<Token> params;
-        final List<Expression> body;
-    }
-
-    static class If extends Expression {
-        If(Expression condition, Expression thenBranch, Expression elseBranch) {
-            this.condition = condition;
-            this.thenBranch = thenBranch;
-            this.elseBranch = elseBranch;
+        @Override
+        boolean sameFields(Expression node) {
+            Calculation other = (Calculation) node;
+            return Objects.equals(operator, other.operator);
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitIfStmt(this);
+        int fieldHash() {
+            return Objects.hashCode(operator);
         }
-
-        final Expression condition;
-        final Expression thenBranch;
-        final Expression elseBranch;
     }
 
-    static class Print extends Expression {
-        Print(Expression expression) {
+    static class Grouping extends Expression {
+        Grouping(Expression expression) {
+            super(GROUPING);
             this.expression = expression;
         }
 
+        final Expression expression;
+
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitPrintStmt(this);
+            return visitor.visitGrouping(this);
         }
 
-        final Expression expression;
-    }
-
-    static class Return extends Expression {
-        Return(Token keyword, Expression value) {
-            this.keyword = keyword;
-            this.value = value;
+        @Override
+        int childCount() {
+            return 1;
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitReturnStmt(this);
+        Expression child(int index) {
+            if (index == 0) return expression;
+            throw new IndexOutOfBoundsException("child " + index);
         }
-
-        final Token keyword;
-        final Expression value;
     }
 
-    static class Var extends Expression {
-        Var(Token name, Expression initializer) {
-            this.name = name;
-            this.initializer = initializer;
+    static class Literal extends Expression {
+        Literal(Object value) {
+            super(LITERAL);
+            this.value = value;
         }
 
+        final Object value;
+
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitVarStmt(this);
+            return visitor.visitLiteral(this);
         }
 
-        final Token name;
-        final Expression initializer;
-    }
-
-    static class While extends Expression {
-        While(Expression condition, Expression body) {
-            this.condition = condition;
-            this.body = body;
+        @Override
+        int childCount() {
+            return 0;
         }
 
         @Override
-        <R> R accept(Visitor<R> visitor) {
-            return visitor.visitWhileStmt(this);
+        Expression child(int index) {
+            throw new IndexOutOfBoundsException("child " + index);
         }
 
-        final Expression condition;
-        final Expression body;
+        @Override
+        boolean sameFields(Expression node) {
+            Literal other = (Literal) node;
+            return Objects.equals(value, other.value);
+        }
 
         @Override
-        public String toString() {
-            return String.format("Loop{while %s do begin %s end}", condition, body);
+        int fieldHash() {
+            return Objects.hashCode(value);
         }
     }
 
-    static class Decl extends Expression {
-        Decl(Token type, Token identifier) {
-            this.type = type;
-            this.identifier = identifier;
-//            this.decl = decl;
+    static class Epsilon extends Expression {
+        Epsilon() {
+            super(EPSILON);
         }
 
         @Override
         <R> R accept(Visitor<R> visitor) {
-            return visitor.visitDecl(this);
+            return visitor.visitEpsilon(this);
         }
 
-        final Token type;
-        final Token identifier;
-//        final Expression decl;
+        @Override
+        int childCount() {
+            return 0;
+        }
 
         @Override
-        public String toString() {
-            return String.format("Decl{%s %s}", type, identifier);
+        Expression child(int index) {
+            throw new IndexOutOfBoundsException("child " + index);
         }
     }
 }
@@ -2,62 +2,314 @@ package tila;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
+// Writes Expression.java from SPEC. Each line is a node class and its fields;
+// fields after a '|' are carried by the node but are not part of its
+// structure, so equals, hashCode and the child accessors leave them out.
+// Expression and List<Expression> fields are the children.
+// The order of the lines gives each node kind its ordinal.
 public class GenerateAst {
+    static final List<String> SPEC = Arrays.asList(
+            "Program     : Expression statements",
+            "Block       : List<Expression> statements | int[] starts",
+            "Decl        : Token type, Token identifier",
+            "Assignment  : Token id, Expression expr",
+            "While       : Expression condition, Expression body",
+            "Unary       : Token operator, Expression right",
+            "Binary      : Expression left, Token operator, Expression right",
+            "Calculation : Token operator, Expression middle, Expression right",
+            "Grouping    : Expression expression",
+            "Literal     : Object value",
+            "Epsilon     :"
+    );
+
     public static void main(String[] args) throws IOException {
         if (args.length != 1) {
             System.err.println("Usage: generate_ast <output directory>");
             System.exit(64);
         }
         String outputDir = args[0];
-        defineAst(outputDir, "Expr", Arrays.asList(
-                "Binary : Expr left, Token operator, Expr right",
-                "Grouping : Expr expression",
-                "Literal : Object value",
-                "Unary : Token operator, Expr right"
-        ));
+        defineAst(outputDir, "Expression", SPEC);
+    }
+
+    private static class Field {
+        final String type;
+        final String name;
+        final boolean structural;
+
+        Field(String field, boolean structural) {
+            int space = field.lastIndexOf(' ');
+            this.type = field.substring(0, space).trim();
+            this.name = field.substring(space + 1).trim();
+            this.structural = structural;
+        }
+
+        boolean isChild() {
+            return structural && type.equals("Expression");
+        }
+
+        boolean isChildList() {
+            return structural && type.equals("List<Expression>");
+        }
     }
 
     private static void defineAst(
             String outputDir, String baseName, List<String> types)
             throws IOException {
         String path = outputDir + "/" + baseName + ".java";
-        PrintWriter writer = new PrintWriter(path, "UTF-8");
-        writer.println("package com.craftinginterpreters.lox;");
+        try (PrintWriter writer = new PrintWriter(path, "UTF-8")) {
+            writer.println("package tila;");
+            writer.println();
+            writer.println("import java.util.Arrays;");
+            writer.println("import java.util.List;");
+            writer.println("import java.util.Objects;");
+            writer.println();
+            writer.println("// Generated by GenerateAst from GenerateAst.SPEC. Do not edit.");
+            writer.println("abstract class " + baseName + " {");
+            for (int kind = 0; kind < types.size(); kind++) {
+                writer.println("    static final int " + constant(className(types.get(kind))) + " = " + kind + ";");
+            }
+            writer.println("    static final int KINDS = " + types.size() + ";");
+            writer.println();
+            writer.println("    interface Visitor<R> {");
+            for (String type : types) {
+                String className = className(type);
+                writer.println("        R visit" + className + "(" + className + " node);");
+            }
+            writer.println("    }");
+            writer.println();
+            writer.println("    // One of the constants above, to switch on instead of testing classes.");
+            writer.println("    final int kind;");
+            writer.println();
+            writer.println("    // Token span [first, end), as recorded by ParserRec. It is relative to");
+            writer.println("    // the first token of the statement the node belongs to (a statement's own");
+            writer.println("    // span starts at 0), so a statement that moves keeps its whole subtree.");
+            writer.println("    // Where each statement starts is kept by its Block. Spans are not part of");
+            writer.println("    // a node's structure: equal trees may sit at different places.");
+            writer.println("    int first;");
+            writer.println("    int end;");
+            writer.println();
+            writer.println("    " + baseName + "(int kind) {");
+            writer.println("        this.kind = kind;");
+            writer.println("    }");
+            writer.println();
+            writer.println("    abstract <R> R accept(Visitor<R> visitor);");
+            writer.println();
+            writer.println("    // The child nodes in field order, each element of a list counting as");
+            writer.println("    // one, so a walk can keep its own stack instead of recursing.");
+            writer.println("    abstract int childCount();");
+            writer.println();
+            writer.println("    abstract " + baseName + " child(int index);");
+            writer.println();
+            defineEquality(writer, baseName);
+            writer.println();
+            writer.println("    // Written by AstWriter, so printing a deep tree costs only its output.");
+            writer.println("    @Override");
+            writer.println("    public String toString() {");
+            writer.println("        return AstWriter.toString(this);");
+            writer.println("    }");
+            for (String type : types) {
+                writer.println();
+                defineType(writer, baseName, className(type), fields(type));
+            }
+            writer.println("}");
+        }
+    }
+
+    // Whole-tree equals and hashCode on the base class, walking the child
+    // accessors with an explicit stack; each node class only compares and
+    // hashes its own other fields.
+    private static void defineEquality(PrintWriter writer, String baseName) {
+        writer.println("    // Structural equality over whole trees, spans left out. Both walks keep");
+        writer.println("    // an explicit stack, so a deep tree costs heap rather than call stack;");
+        writer.println("    // each node compares and hashes only its fields besides children.");
+        writer.println("    @Override");
+        writer.println("    public final boolean equals(Object o) {");
+        writer.println("        if (this == o) return true;");
+        writer.println("        if (!(o instanceof " + baseName + ")) return false;");
+        writer.println("        " + baseName + "[] stack = new " + baseName + "[32];");
+        writer.println("        int top = 0;");
+        writer.println("        stack[top++] = this;");
+        writer.println("        stack[top++] = (" + baseName + ") o;");
+        writer.println("        while (top > 0) {");
+        writer.println("            " + baseName + " right = stack[--top];");
+        writer.println("            " + baseName + " left = stack[--top];");
+        writer.println("            if (left == right) continue;");
+        writer.println("            if (left == null || right == null || left.kind != right.kind) return false;");
+        writer.println("            int count = left.childCount();");
+        writer.println("            if (count != right.childCount() || !left.sameFields(right)) return false;");
+        writer.println("            if (top + 2 * count > stack.length) stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + 2 * count));");
+        writer.println("            for (int i = count - 1; i >= 0; i--) {");
+        writer.println("                stack[top++] = left.child(i);");
+        writer.println("                stack[top++] = right.child(i);");
+        writer.println("            }");
+        writer.println("        }");
+        writer.println("        return true;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    // Hashes the nodes in preorder with their child counts, which fixes");
+        writer.println("    // the shape of the tree.");
+        writer.println("    @Override");
+        writer.println("    public final int hashCode() {");
+        writer.println("        int hash = 0;");
+        writer.println("        " + baseName + "[] stack = new " + baseName + "[32];");
+        writer.println("        int top = 0;");
+        writer.println("        stack[top++] = this;");
+        writer.println("        while (top > 0) {");
+        writer.println("            " + baseName + " node = stack[--top];");
+        writer.println("            if (node == null) {");
+        writer.println("                hash = 31 * hash;");
+        writer.println("                continue;");
+        writer.println("            }");
+        writer.println("            int count = node.childCount();");
+        writer.println("            hash = 31 * (31 * (31 * hash + node.kind) + node.fieldHash()) + count;");
+        writer.println("            if (top + count > stack.length) stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + count));");
+        writer.println("            for (int i = count - 1; i >= 0; i--) {");
+        writer.println("                stack[top++] = node.child(i);");
+        writer.println("            }");
+        writer.println("        }");
+        writer.println("        return hash;");
+        writer.println("    }");
         writer.println();
-        writer.println("import java.util.List;");
+        writer.println("    // Whether node, of the same kind, has equal fields besides children.");
+        writer.println("    boolean sameFields(" + baseName + " node) {");
+        writer.println("        return true;");
+        writer.println("    }");
         writer.println();
-        writer.println("abstract class " + baseName + " {");
-        for (String type : types) {
-            String className = type.split(":")[0].trim();
-            String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
+        writer.println("    int fieldHash() {");
+        writer.println("        return 0;");
+        writer.println("    }");
+    }
+
+    private static String className(String type) {
+        return type.split(":")[0].trim();
+    }
+
+    private static String constant(String className) {
+        return className.toUpperCase(Locale.ROOT);
+    }
+
+    private static List<Field> fields(String type) {
+        List<Field> fields = new ArrayList<>();
+        String[] parts = type.substring(type.indexOf(':') + 1).split("\\|");
+        for (int part = 0; part < parts.length; part++) {
+            for (String field : parts[part].split(",")) {
+                if (!field.trim().isEmpty()) fields.add(new Field(field.trim(), part == 0));
+            }
         }
-        writer.println("}");
-        writer.close();
+        return fields;
     }
 
     private static void defineType(
             PrintWriter writer, String baseName,
-            String className, String fieldList) {
-        writer.println(" static class " + className + " extends " +
-                baseName + " {");
-        // Constructor.
-        writer.println(" " + className + "(" + fieldList + ") {");
-        // Store parameters in fields.
-        String[] fields = fieldList.split(", ");
-        for (String field : fields) {
-            String name = field.split(" ")[1];
-            writer.println(" this." + name + " = " + name + ";");
-        }
-        writer.println(" }");
-        // Fields.
-        writer.println();
-        for (String field : fields) {
-            writer.println(" final " + field + ";");
-        }
-        writer.println(" }");
+            String className, List<Field> fields) {
+        writer.println("    static class " + className + " extends " + baseName + " {");
+        StringBuilder parameters = new StringBuilder();
+        for (Field field : fields) {
+            if (parameters.length() > 0) parameters.append(", ");
+            parameters.append(field.type).append(' ').append(field.name);
+        }
+        writer.println("        " + className + "(" + parameters + ") {");
+        writer.println("            super(" + constant(className) + ");");
+        for (Field field : fields) {
+            writer.println("            this." + field.name + " = " + field.name + ";");
+        }
+        writer.println("        }");
+        writer.println();
+        for (Field field : fields) {
+            writer.println("        final " + field.type + " " + field.name + ";");
+        }
+        if (!fields.isEmpty()) writer.println();
+
+        writer.println("        @Override");
+        writer.println("        <R> R accept(Visitor<R> visitor) {");
+        writer.println("            return visitor.visit" + className + "(this);");
+        writer.println("        }");
+        writer.println();
+        defineChildren(writer, baseName, fields);
+        defineFields(writer, baseName, className, fields);
+        writer.println("    }");
+    }
+
+    private static void defineChildren(PrintWriter writer, String baseName, List<Field> fields) {
+        int single = 0;
+        List<String> sizes = new ArrayList<>();
+        for (Field field : fields) {
+            if (field.isChild()) single++;
+            if (field.isChildList()) sizes.add(field.name + ".size()");
+        }
+        if (single > 0 || sizes.isEmpty()) sizes.add(0, String.valueOf(single));
+        writer.println("        @Override");
+        writer.println("        int childCount() {");
+        writer.println("            return " + String.join(" + ", sizes) + ";");
+        writer.println("        }");
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        " + baseName + " child(int index) {");
+        // Without lists every child sits at a fixed index; a list shifts
+        // whatever follows it.
+        boolean shifted = false;
+        int at = 0;
+        int last = -1;
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).isChild() || fields.get(i).isChildList()) last = i;
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            if (field.isChild()) {
+                writer.println("            if (index == " + at + ") return " + field.name + ";");
+                if (shifted) {
+                    writer.println("            index--;");
+                } else {
+                    at++;
+                }
+            } else if (field.isChildList()) {
+                if (at > 0) writer.println("            index -= " + at + ";");
+                writer.println("            if (index < " + field.name + ".size()) return " + field.name + ".get(index);");
+                if (i < last) writer.println("            index -= " + field.name + ".size();");
+                shifted = true;
+                at = 0;
+            }
+        }
+        writer.println("            throw new IndexOutOfBoundsException(\"child \" + index);");
+        writer.println("        }");
+    }
+
+    // Only the fields besides children; Expression.equals and hashCode walk
+    // the children themselves.
+    private static void defineFields(PrintWriter writer, String baseName, String className, List<Field> fields) {
+        List<String> names = new ArrayList<>();
+        for (Field field : fields) {
+            if (field.structural && !field.isChild() && !field.isChildList()) names.add(field.name);
+        }
+        if (names.isEmpty()) return;
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        boolean sameFields(" + baseName + " node) {");
+        writer.println("            " + className + " other = (" + className + ") node;");
+        StringBuilder comparison = new StringBuilder();
+        for (String name : names) {
+            if (comparison.length() > 0) comparison.append("\n                    && ");
+            comparison.append("Objects.equals(").append(name).append(", other.").append(name).append(")");
+        }
+        writer.println("            return " + comparison + ";");
+        writer.println("        }");
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        int fieldHash() {");
+        if (names.size() == 1) {
+            writer.println("            return Objects.hashCode(" + names.get(0) + ");");
+        } else {
+            writer.println("            int hash = 0;");
+            for (String name : names) {
+                writer.println("            hash = 31 * hash + Objects.hashCode(" + name + ");");
+            }
+            writer.println("            return hash;");
+        }
+        writer.println("        }");
     }
 }
@@ -0,0 +1,330 @@
+package tila;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Generated by ParserGenerator from Parser.GRAMMAR. Do not edit.
+final class GeneratedParser {
+    private static class ParseError extends RuntimeException {
+        ParseError() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final ParseError PARSE_ERROR = new ParseError();
+
+    private final TokenCursor tokens;
+
+    GeneratedParser(List<Token> tokens) {
+        this(new TokenCursor.ListCursor(tokens));
+    }
+
+    GeneratedParser(TokenCursor tokens) {
+        this.tokens = tokens;
+    }
+
+    Expression parse() {
+        try {
+            return program();
+        } catch (ParseError error) {
+            return null;
+        }
+    }
+
+    private Expression program() {
+        // Program -> BEGIN Statements END EOF
+        match(14, "Expect BEGIN");
+        Expression v1 = statements();
+        match(15, "Expect END");
+        match(17, "Expect EOF");
+        return new Expression.Program(Parser.reverse(v1));
+    }
+
+    private Expression statements() {
+        List<Expression> v0s = null;
+        elements:
+        while (true) {
+            switch (lookahead()) {
+                case 8: // IDENTIFIER
+                case 11: // PRINT
+                case 12: // WHILE
+                case 16: // INT
+                {
+                    // Statements -> Statement SEMICOLON Statements
+                    Expression v0 = statement();
+                    match(3, "Expect SEMICOLON");
+                    if (v0s == null) {
+                        v0s = new ArrayList<>();
+                    }
+                    v0s.add(v0);
+                    continue;
+                }
+                case 15: // END
+                    break elements;
+                default:
+                    throw error("Expect IDENTIFIER or PRINT or WHILE or END or INT");
+            }
+        }
+        // Statements -> EPSILON
+        Expression result = new Expression.Block(new ArrayList<>(), null);
+        for (int i = v0s == null ? -1 : v0s.size() - 1; i >= 0; i--) {
+            Expression v0 = v0s.get(i);
+            result = Parser.append(v0, result);
+        }
+        return result;
+    }
+
+    private Expression statement() {
+        switch (lookahead()) {
+            case 16: // INT
+            {
+                // Statement -> Decl
+                Expression v0 = decl();
+                return v0;
+            }
+            case 8: // IDENTIFIER
+            {
+                // Statement -> Assigment
+                Expression v0 = assigment();
+                return v0;
+            }
+            case 12: // WHILE
+            {
+                // Statement -> Loop
+                Expression v0 = loop();
+                return v0;
+            }
+            case 11: // PRINT
+            {
+                // Statement -> PRINT Expr
+                Token v0 = take();
+                Expression v1 = expr();
+                return new Expression.Unary(v0, v1);
+            }
+            default:
+                throw error("Expect IDENTIFIER or PRINT or WHILE or INT");
+        }
+    }
+
+    private Expression decl() {
+        // Decl -> Type IDENTIFIER
+        Token v0 = type();
+        Token v1 = take(8, "Expect IDENTIFIER");
+        return new Expression.Decl(v0, v1);
+    }
+
+    private Expression assigment() {
+        // Assigment -> IDENTIFIER EQUAL Expr
+        Token v0 = take(8, "Expect IDENTIFIER");
+        match(6, "Expect EQUAL");
+        Expression v2 = expr();
+        return new Expression.Assignment(v0, v2);
+    }
+
+    private Expression loop() {
+        // Loop -> WHILE Expr DO BEGIN Statements END
+        match(12, "Expect WHILE");
+        Expression v1 = expr();
+        match(13, "Expect DO");
+        match(14, "Expect BEGIN");
+        Expression v4 = statements();
+        match(15, "Expect END");
+        return new Expression.While(v1, Parser.reverse(v4));
+    }
+
+    private Token type() {
+        // Type -> INT
+        Token v0 = take(16, "Expect INT");
+        return v0;
+    }
+
+    private Expression expr() {
+        // Expr -> Expr1 Expr2
+        Expression v0 = expr1();
+        Expression v1 = expr2();
+        return Parser.fold(v0, v1);
+    }
+
+    private Expression expr1() {
+        // Expr1 -> Expr3 Expr4
+        Expression v0 = expr3();
+        Expression v1 = expr4();
+        return Parser.fold(v0, v1);
+    }
+
+    private Expression expr2() {
+        List<Token> v0s = null;
+        List<Expression> v1s = null;
+        elements:
+        while (true) {
+            switch (lookahead()) {
+                case 2: // MINUS
+                {
+                    // Expr2 -> MINUS Expr1 Expr2
+                    Token v0 = take();
+                    Expression v1 = expr1();
+                    if (v0s == null) {
+                        v0s = new ArrayList<>();
+                        v1s = new ArrayList<>();
+                    }
+                    v0s.add(v0);
+                    v1s.add(v1);
+                    continue;
+                }
+                case 1: // RIGHT_PAREN
+                case 3: // SEMICOLON
+                case 13: // DO
+                    break elements;
+                default:
+                    throw error("Expect RIGHT_PAREN or MINUS or SEMICOLON or DO");
+            }
+        }
+        // Expr2 -> EPSILON
+        Expression result = new Expression.Epsilon();
+        for (int i = v0s == null ? -1 : v0s.size() - 1; i >= 0; i--) {
+            Token v0 = v0s.get(i);
+            Expression v1 = v1s.get(i);
+            result = new Expression.Calculation(v0, v1, result);
+        }
+        return result;
+    }
+
+    private Expression expr3() {
+        // Expr3 -> Expr5 Expr7
+        Expression v0 = expr5();
+        Expression v1 = expr7();
+        return Parser.fold(v0, v1);
+    }
+
+    private Expression expr4() {
+        List<Token> v0s = null;
+        List<Expression> v1s = null;
+        elements:
+        while (true) {
+            switch (lookahead()) {
+                case 4: // STAR
+                {
+                    // Expr4 -> STAR Expr3 Expr4
+                    Token v0 = take();
+                    Expression v1 = expr3();
+                    if (v0s == null) {
+                        v0s = new ArrayList<>();
+                        v1s = new ArrayList<>();
+                    }
+                    v0s.add(v0);
+                    v1s.add(v1);
+                    continue;
+                }
+                case 1: // RIGHT_PAREN
+                case 2: // MINUS
+                case 3: // SEMICOLON
+                case 13: // DO
+                    break elements;
+                default:
+                    throw error("Expect RIGHT_PAREN or MINUS or SEMICOLON or STAR or DO");
+            }
+        }
+        // Expr4 -> EPSILON
+        Expression result = new Expression.Epsilon();
+        for (int i = v0s == null ? -1 : v0s.size() - 1; i >= 0; i--) {
+            Token v0 = v0s.get(i);
+            Expression v1 = v1s.get(i);
+            result = new Expression.Calculation(v0, v1, result);
+        }
+        return result;
+    }
+
+    private Expression expr5() {
+        switch (lookahead()) {
+            case 0: // LEFT_PAREN
+            {
+                // Expr5 -> LEFT_PAREN Expr RIGHT_PAREN
+                advance();
+                Expression v1 = expr();
+                match(1, "Expect RIGHT_PAREN");
+                return new Expression.Grouping(v1);
+            }
+            case 8: // IDENTIFIER
+            case 10: // NUMBER
+            {
+                // Expr5 -> Expr6
+                Expression v0 = expr6();
+                return v0;
+            }
+            default:
+                throw error("Expect LEFT_PAREN or IDENTIFIER or NUMBER");
+        }
+    }
+
+    private Expression expr6() {
+        switch (lookahead()) {
+            case 8: // IDENTIFIER
+            {
+                // Expr6 -> IDENTIFIER
+                Token v0 = take();
+                return new Expression.Literal(v0);
+            }
+            case 10: // NUMBER
+            {
+                // Expr6 -> NUMBER
+                Token v0 = take();
+                return new Expression.Literal(v0);
+            }
+            default:
+                throw error("Expect IDENTIFIER or NUMBER");
+        }
+    }
+
+    private Expression expr7() {
+        switch (lookahead()) {
+            case 5: // CARET
+            {
+                // Expr7 -> CARET Expr3
+                Token v0 = take();
+                Expression v1 = expr3();
+                return new Expression.Unary(v0, v1);
+            }
+            case 1: // RIGHT_PAREN
+            case 2: // MINUS
+            case 3: // SEMICOLON
+            case 4: // STAR
+            case 13: // DO
+            {
+                // Expr7 -> EPSILON
+                return new Expression.Epsilon();
+            }
+            default:
+                throw error("Expect RIGHT_PAREN or MINUS or SEMICOLON or STAR or CARET or DO");
+        }
+    }
+
+    private int lookahead() {
+        return tokens.peekType().ordinal();
+    }
+
+    private void advance() {
+        tokens.advance();
+    }
+
+    private Token take() {
+        Token token = tokens.peek();
+        advance();
+        return token;
+    }
+
+    private Token take(int type, String message) {
+        if (lookahead() != type) throw error(message);
+        return take();
+    }
+
+    private void match(int type, String message) {
+        if (lookahead() != type) throw error(message);
+        advance();
+    }
+
+    private ParseError error(String message) {
+        Token token = tokens.peek();
+        Tila.error(token, message);
+        return PARSE_ERROR;
+    }
+}
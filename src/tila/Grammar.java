@@ -5,11 +5,26 @@ import java.util.List;
 public class Grammar {
     ITokenType left;
     List<ITokenType> right;
-    List<ITokenType> firstPlus;
+    // The same action as Java source for ParserGenerator, with $i standing
+    // for the value of right.get(i).
+    String template;
+    Action action;
+
+    // Builds the node for a production once its right side is parsed; the
+    // right side's values sit in values[from ..] in order.
+    interface Action {
+        Object reduce(Object[] values, int from);
+    }
 
     public Grammar(ITokenType left, List<ITokenType> right) {
+        this(left, right, null, null);
+    }
+
+    public Grammar(ITokenType left, List<ITokenType> right, String template, Action action) {
         this.left = left;
         this.right = right;
+        this.template = template;
+        this.action = action;
     }
 
 
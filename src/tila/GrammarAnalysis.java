@@ -0,0 +1,258 @@
+package tila;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static tila.TokenType.EOF;
+import static tila.TokenType.EPSILON;
+
+// FIRST, FOLLOW and FIRST+ for a grammar whose terminals are the constants of
+// one enum and whose nonterminals are the constants of another, such as
+// TokenType and ExpressionEnum. Sets are long bitsets over terminal ordinals,
+// and each fixed point is a worklist: a production is revisited only when a
+// set it reads from has grown.
+class GrammarAnalysis {
+    private final Enum<?>[] terminals;
+    private final Enum<?>[] nonTerminals;
+    private final long epsilon;
+    // Productions with symbols encoded as terminal ordinal, or terminal count
+    // plus nonterminal ordinal; EPSILON is dropped from right sides.
+    private final int[] left;
+    private final int[][] right;
+
+    private final long[] first;
+    private final long[] follow;
+    private final long[] firstPlus;
+    // uses[n] lists the productions with nonterminal n on their right side.
+    private final int[][] uses;
+    // defines[n] lists the productions with nonterminal n on their left side.
+    private final int[][] defines;
+
+    GrammarAnalysis(List<Grammar> grammar, ExpressionEnum start) {
+        this(lefts(grammar), rights(grammar), start, EPSILON, EOF);
+    }
+
+    GrammarAnalysis(List<? extends Enum<?>> lefts, List<? extends List<? extends Enum<?>>> rights,
+                    Enum<?> start, Enum<?> epsilon, Enum<?> eof) {
+        this.terminals = epsilon.getDeclaringClass().getEnumConstants();
+        this.nonTerminals = start.getDeclaringClass().getEnumConstants();
+        if (terminals.length > Long.SIZE) throw new IllegalArgumentException("Too many terminals for a long bitset");
+        this.epsilon = 1L << epsilon.ordinal();
+        this.left = new int[lefts.size()];
+        this.right = new int[lefts.size()][];
+        for (int p = 0; p < left.length; p++) {
+            left[p] = lefts.get(p).ordinal();
+            right[p] = rights.get(p).stream().filter(a -> a != epsilon).mapToInt(this::encode).toArray();
+        }
+
+        this.first = new long[nonTerminals.length];
+        this.follow = new long[nonTerminals.length];
+        this.firstPlus = new long[left.length];
+        this.uses = new int[nonTerminals.length][];
+        this.defines = new int[nonTerminals.length][];
+        index();
+        closeFirst();
+        closeFollow(start.ordinal(), 1L << eof.ordinal());
+        for (int p = 0; p < left.length; p++) {
+            long bits = first(right[p]);
+            firstPlus[p] = (bits & this.epsilon) != 0 ? bits | follow[left[p]] : bits;
+        }
+    }
+
+    private static List<Enum<?>> lefts(List<Grammar> grammar) {
+        List<Enum<?>> lefts = new ArrayList<>(grammar.size());
+        for (Grammar production : grammar) lefts.add((Enum<?>) production.left);
+        return lefts;
+    }
+
+    private static List<List<Enum<?>>> rights(List<Grammar> grammar) {
+        List<List<Enum<?>>> rights = new ArrayList<>(grammar.size());
+        for (Grammar production : grammar) {
+            List<Enum<?>> right = new ArrayList<>(production.right.size());
+            for (ITokenType symbol : production.right) right.add((Enum<?>) symbol);
+            rights.add(right);
+        }
+        return rights;
+    }
+
+    private int encode(Enum<?> symbol) {
+        if (symbol.getDeclaringClass() == terminals[0].getDeclaringClass()) return symbol.ordinal();
+        if (symbol.getDeclaringClass() == nonTerminals[0].getDeclaringClass()) return terminals.length + symbol.ordinal();
+        throw new IllegalArgumentException("Not a terminal or nonterminal: " + symbol);
+    }
+
+    private void index() {
+        int[] useCount = new int[nonTerminals.length];
+        int[] defineCount = new int[nonTerminals.length];
+        for (int p = 0; p < left.length; p++) {
+            defineCount[left[p]]++;
+            for (int symbol : right[p]) {
+                if (symbol >= terminals.length) useCount[symbol - terminals.length]++;
+            }
+        }
+        for (int n = 0; n < nonTerminals.length; n++) {
+            uses[n] = new int[useCount[n]];
+            defines[n] = new int[defineCount[n]];
+            useCount[n] = 0;
+            defineCount[n] = 0;
+        }
+        for (int p = 0; p < left.length; p++) {
+            defines[left[p]][defineCount[left[p]]++] = p;
+            for (int symbol : right[p]) {
+                if (symbol < terminals.length) continue;
+                // A production reading the same nonterminal twice is listed once.
+                int n = symbol - terminals.length;
+                if (useCount[n] == 0 || uses[n][useCount[n] - 1] != p) uses[n][useCount[n]++] = p;
+            }
+        }
+        for (int n = 0; n < nonTerminals.length; n++) {
+            if (useCount[n] < uses[n].length) uses[n] = Arrays.copyOf(uses[n], useCount[n]);
+        }
+    }
+
+    private void closeFirst() {
+        Worklist work = new Worklist(left.length);
+        while (!work.isEmpty()) {
+            int p = work.pop();
+            long bits = first[left[p]] | first(right[p]);
+            if (bits != first[left[p]]) {
+                first[left[p]] = bits;
+                for (int user : uses[left[p]]) work.push(user);
+            }
+        }
+    }
+
+    // FOLLOW(n) feeds every nonterminal at the nullable tail of n's
+    // productions, so when it grows those productions are revisited.
+    private void closeFollow(int start, long eof) {
+        follow[start] = eof;
+        Worklist work = new Worklist(left.length);
+        while (!work.isEmpty()) {
+            int p = work.pop();
+            long trailer = follow[left[p]];
+            for (int i = right[p].length - 1; i >= 0; i--) {
+                int symbol = right[p][i];
+                if (symbol >= terminals.length) {
+                    int n = symbol - terminals.length;
+                    long bits = follow[n] | trailer;
+                    if (bits != follow[n]) {
+                        follow[n] = bits;
+                        for (int definer : defines[n]) work.push(definer);
+                    }
+                    trailer = (first[n] & epsilon) != 0 ? trailer | (first[n] & ~epsilon) : first[n];
+                } else {
+                    trailer = 1L << symbol;
+                }
+            }
+        }
+    }
+
+    // FIRST of a whole right side; contains EPSILON only if all of it is nullable.
+    private long first(int[] symbols) {
+        long bits = 0;
+        for (int symbol : symbols) {
+            long symbolBits = symbol < terminals.length ? 1L << symbol : first[symbol - terminals.length];
+            bits |= symbolBits & ~epsilon;
+            if ((symbolBits & epsilon) == 0) return bits;
+        }
+        return bits | epsilon;
+    }
+
+    long first(Enum<?> symbol) {
+        int encoded = encode(symbol);
+        return encoded < terminals.length ? 1L << encoded : first[encoded - terminals.length];
+    }
+
+    long follow(Enum<?> nonTerminal) {
+        return follow[encode(nonTerminal) - terminals.length];
+    }
+
+    long firstPlus(int production) {
+        return firstPlus[production];
+    }
+
+    // Pairs of productions for one nonterminal whose FIRST+ sets overlap;
+    // empty exactly when the grammar is LL(1).
+    List<String> conflicts() {
+        List<String> conflicts = new ArrayList<>();
+        for (int[] productions : defines) {
+            for (int i = 0; i < productions.length; i++) {
+                for (int j = i + 1; j < productions.length; j++) {
+                    long overlap = firstPlus[productions[i]] & firstPlus[productions[j]] & ~epsilon;
+                    if (overlap != 0) {
+                        conflicts.add(String.format("%s and %s both predict on %s",
+                                describe(productions[i]), describe(productions[j]), terminals(overlap)));
+                    }
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    private String describe(int production) {
+        StringJoiner symbols = new StringJoiner(" ");
+        for (int symbol : right[production]) {
+            symbols.add(symbol < terminals.length ? terminals[symbol].name() : nonTerminals[symbol - terminals.length].name());
+        }
+        if (right[production].length == 0) symbols.add(terminals[Long.numberOfTrailingZeros(epsilon)].name());
+        return nonTerminals[left[production]] + " -> " + symbols;
+    }
+
+    static String describe(Grammar production) {
+        StringJoiner right = new StringJoiner(" ");
+        for (ITokenType symbol : production.right) right.add(symbol.toString());
+        return production.left + " -> " + right;
+    }
+
+    // The terminals in a set, in ordinal order.
+    List<Enum<?>> terminals(long bits) {
+        List<Enum<?>> symbols = new ArrayList<>(Long.bitCount(bits));
+        for (; bits != 0; bits &= bits - 1) {
+            symbols.add(terminals[Long.numberOfTrailingZeros(bits)]);
+        }
+        return symbols;
+    }
+
+    static List<TokenType> tokens(long bits) {
+        List<TokenType> tokens = new ArrayList<>(Long.bitCount(bits));
+        TokenType[] types = TokenType.values();
+        for (; bits != 0; bits &= bits - 1) {
+            tokens.add(types[Long.numberOfTrailingZeros(bits)]);
+        }
+        return tokens;
+    }
+
+    // FIFO of production indices that never holds the same index twice.
+    private static class Worklist {
+        private final int[] queue;
+        private final boolean[] queued;
+        private int head = 0;
+        private int size = 0;
+
+        Worklist(int productions) {
+            queue = new int[productions];
+            queued = new boolean[productions];
+            for (int p = 0; p < productions; p++) push(p);
+        }
+
+        void push(int production) {
+            if (queued[production]) return;
+            queued[production] = true;
+            queue[(head + size++) % queue.length] = production;
+        }
+
+        int pop() {
+            int production = queue[head];
+            head = (head + 1) % queue.length;
+            size--;
+            queued[production] = false;
+            return production;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
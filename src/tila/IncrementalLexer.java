@@ -0,0 +1,134 @@
+package tila;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static tila.TokenType.EOF;
+
+// Keeps a source text and its TokenBuffer in step across edits. An edit only
+// rescans from the token before the damage until the new tokens line up with
+// an old token again; everything after that is kept and just moved, which
+// the gaps of TextBuffer and TokenBuffer make cheap for nearby edits. The
+// diagnostics it is given hold the scan errors of the current text: errors in
+// the rescanned stretch are replaced by those the rescan finds, and later ones
+// move along with their tokens.
+class IncrementalLexer {
+    // Old tokens [first, oldEnd) were replaced by new tokens [first, newEnd).
+    static class Change {
+        final int first;
+        final int oldEnd;
+        final int newEnd;
+
+        Change(int first, int oldEnd, int newEnd) {
+            this.first = first;
+            this.oldEnd = oldEnd;
+            this.newEnd = newEnd;
+        }
+    }
+
+    private final TextBuffer text;
+    private final TokenBuffer tokens;
+    private final Diagnostics diagnostics;
+
+    IncrementalLexer(String source, Diagnostics diagnostics) {
+        this.text = new TextBuffer(source);
+        this.diagnostics = diagnostics;
+        this.tokens = new Scanner(text, 0, text.length(), diagnostics).scanBuffer();
+    }
+
+    TokenBuffer tokens() {
+        return tokens;
+    }
+
+    CharSequence text() {
+        return text;
+    }
+
+    Change edit(int offset, int removed, String inserted) {
+        int delta = inserted.length() - removed;
+        // The first token that touches the edit; a token ending right at the
+        // edit could grow into the inserted text.
+        int first = firstTouching(offset);
+        int from = 0;
+        int line = 1;
+        int column = 1;
+        if (first > 0) {
+            int previous = first - 1;
+            from = tokens.start(previous) + tokens.length(previous);
+            line = tokens.line(previous);
+            column = tokens.column(previous) + tokens.length(previous);
+        }
+
+        text.replace(offset, removed, inserted);
+        int editEnd = offset + inserted.length();
+        Diagnostics rescanned = new Diagnostics();
+        Scanner scanner = new Scanner(text, from, text.length(), line, column, tokens.symbols(), rescanned);
+        TokenBuffer scanned = scanner.tokens();
+        int old = first;
+        while (scanner.scanNext()) {
+            int last = scanned.size() - 1;
+            int start = scanned.start(last);
+            if (start < editEnd) continue;
+            // Past the edit the text is unchanged, so a new token that starts
+            // where an old one used to means the rest is unchanged too.
+            while (old < tokens.size() && tokens.start(old) + delta < start) old++;
+            if (old < tokens.size() && tokens.start(old) + delta == start) {
+                int lineDelta = scanned.line(last) - tokens.line(old);
+                int columnDelta = scanned.column(last) - tokens.column(old);
+                int columnLine = tokens.line(old);
+                tokens.splice(first, old, scanned, last);
+                tokens.shift(first + last, delta, lineDelta, columnLine, columnDelta);
+                replaceErrors(from, start - delta, start, rescanned, lineDelta, columnLine, columnDelta);
+                return new Change(first, old, first + last);
+            }
+        }
+        scanner.scanBuffer();
+        int oldEnd = tokens.size();
+        tokens.splice(first, oldEnd, scanned, scanned.size());
+        replaceErrors(from, text.length() - delta, text.length(), rescanned, 0, 0, 0);
+        return new Change(first, oldEnd, tokens.size());
+    }
+
+    // Old offsets [from, oldEnd) were rescanned as new offsets [from, newEnd):
+    // drops the errors found there before, puts the rescan's in their place
+    // and moves the ones after them the way TokenBuffer.shift moves tokens.
+    private void replaceErrors(int from, int oldEnd, int newEnd, Diagnostics rescanned, int lineDelta, int columnLine, int columnDelta) {
+        if (diagnostics == null) {
+            // Without a collector errors went straight to Tila.error.
+            rescanned.report(0);
+            return;
+        }
+        List<Diagnostics.Diagnostic> errors = diagnostics.errors();
+        if (errors.isEmpty() && rescanned.isEmpty()) return;
+        List<Diagnostics.Diagnostic> replaced = new ArrayList<>(errors.size() + rescanned.errors().size());
+        for (Diagnostics.Diagnostic error : errors) {
+            if (error.offset < from) replaced.add(error);
+        }
+        for (Diagnostics.Diagnostic error : rescanned.errors()) {
+            if (error.offset < newEnd) replaced.add(error);
+        }
+        for (Diagnostics.Diagnostic error : errors) {
+            if (error.offset < oldEnd) continue;
+            int errorColumn = error.line == columnLine ? error.column + columnDelta : error.column;
+            replaced.add(new Diagnostics.Diagnostic(error.line + lineDelta, errorColumn, error.message, error.offset + newEnd - oldEnd));
+        }
+        errors.clear();
+        errors.addAll(replaced);
+    }
+
+    // Binary search for the first token whose end is at or after offset. The
+    // trailing EOF token ends at the end of the text, so there always is one.
+    private int firstTouching(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.start(middle) + tokens.length(middle) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,161 @@
+package tila;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static tila.TokenType.BEGIN;
+import static tila.TokenType.END;
+import static tila.TokenType.SEMICOLON;
+
+// Keeps a program's tree in step with edits to its source. Once the lexer has
+// patched the tokens, only the statements the damage touches are parsed
+// again, in the innermost loop body that holds all of it; every other
+// statement is reused as is, since the spans inside a statement are relative
+// to its start. When that cannot be done safely, say the edit hits a 'begin'
+// or the tree had syntax errors, the whole program is parsed again.
+class IncrementalParser {
+    private final IncrementalLexer lexer;
+    private Expression.Program program;
+    private Diagnostics errors;
+    private Diagnostics regionErrors;
+
+    IncrementalParser(String source, Diagnostics diagnostics) {
+        this.lexer = new IncrementalLexer(source, diagnostics);
+        parseAll();
+    }
+
+    Expression.Program program() {
+        return program;
+    }
+
+    // Syntax errors in the current tree; scan errors go to the diagnostics
+    // the lexer was given.
+    Diagnostics errors() {
+        return errors;
+    }
+
+    CharSequence text() {
+        return lexer.text();
+    }
+
+    Expression.Program edit(int offset, int removed, String inserted) {
+        IncrementalLexer.Change change = lexer.edit(offset, removed, inserted);
+        // An edit may fix an error anywhere else, so after one only a full
+        // parse reports the right errors.
+        if (!errors.isEmpty() || !reparse(change)) parseAll();
+        return program;
+    }
+
+    private void parseAll() {
+        errors = new Diagnostics();
+        program = (Expression.Program) new ParserRec(lexer.tokens().cursor(), errors).parse();
+    }
+
+    private boolean reparse(IncrementalLexer.Change change) {
+        // Old tokens [from, to) are damaged; an insertion between two tokens
+        // damages the one the lexer started at.
+        int from = change.first;
+        int to = Math.max(change.oldEnd, change.first + 1);
+        int delta = change.newEnd - change.oldEnd;
+        Expression.Block top = (Expression.Block) program.statements;
+        Expression.Block block = reparse(top, top.first, from, to, delta);
+        if (block == null) return false;
+        Expression.Program reparsed = new Expression.Program(block);
+        reparsed.end = program.end + delta;
+        program = reparsed;
+        errors = regionErrors;
+        return true;
+    }
+
+    // block with the run of statements covering old tokens [from, to) parsed
+    // again, or null if the damage is not inside one. base is the index of
+    // the block's first token, which comes before the damage.
+    private Expression.Block reparse(Expression.Block block, int base, int from, int to, int delta) {
+        if (block.starts == null) return null;
+        int i = statementAt(block, base, from);
+        int j = statementAt(block, base, to - 1);
+        if (i < 0 || j < 0) return null;
+        int start = base + block.starts[i];
+
+        if (i == j && block.statements.get(i).kind == Expression.WHILE) {
+            Expression.While loop = (Expression.While) block.statements.get(i);
+            Expression.Block body = (Expression.Block) loop.body;
+            if (from >= start + body.first && to <= start + body.end) {
+                Expression.Block reparsed = reparse(body, start + body.first, from, to, delta);
+                if (reparsed != null) {
+                    Expression.While moved = new Expression.While(loop.condition, reparsed);
+                    moved.end = loop.end + delta;
+                    return replace(block, i, j, List.of(moved), new int[]{block.starts[i]}, delta);
+                }
+            }
+        }
+
+        // New tokens [start, end) hold the statements and their ';'s.
+        TokenBuffer tokens = lexer.tokens();
+        int end = base + block.starts[j] + block.statements.get(j).end + 1 + delta;
+        if (!balanced(tokens, start, end)) return null;
+        Diagnostics errors = new Diagnostics();
+        ParserRec parser = new ParserRec(tokens.cursor(start, end), errors);
+        Expression.Block region = parser.region();
+        if (parser.position() != end - start) return null;
+        int[] starts = region.starts;
+        for (int k = 0; k < starts.length; k++) {
+            starts[k] += start - base;
+        }
+        regionErrors = errors;
+        return replace(block, i, j, region.statements, starts, delta);
+    }
+
+    // The statement whose tokens, with its ';', include index, or -1 if the
+    // index falls between statements.
+    private static int statementAt(Expression.Block block, int base, int index) {
+        int low = 0;
+        int high = block.starts.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (base + block.starts[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (high < 0 || base + block.starts[low] > index) return -1;
+        return index <= base + block.starts[low] + block.statements.get(low).end ? low : -1;
+    }
+
+    // Whether [start, end) is a run of whole statements as far as the tokens
+    // can tell: it ends in a ';' and every 'begin' in it is closed in it.
+    private static boolean balanced(TokenBuffer tokens, int start, int end) {
+        if (end > tokens.size() - 1 || end <= start || tokens.type(end - 1) != SEMICOLON) return false;
+        int depth = 0;
+        for (int k = start; k < end; k++) {
+            TokenType type = tokens.type(k);
+            if (type == BEGIN) {
+                depth++;
+            } else if (type == END && --depth < 0) {
+                return false;
+            }
+        }
+        return depth == 0;
+    }
+
+    // block with statements [i, j] replaced, and every later statement moved
+    // by delta tokens.
+    private static Expression.Block replace(Expression.Block block, int i, int j, List<Expression> replacement, int[] replacementStarts, int delta) {
+        int size = block.statements.size() - (j - i + 1) + replacement.size();
+        List<Expression> statements = new ArrayList<>(size);
+        statements.addAll(block.statements.subList(0, i));
+        statements.addAll(replacement);
+        statements.addAll(block.statements.subList(j + 1, block.statements.size()));
+        int[] starts = new int[size];
+        System.arraycopy(block.starts, 0, starts, 0, i);
+        System.arraycopy(replacementStarts, 0, starts, i, replacementStarts.length);
+        for (int k = j + 1, at = i + replacementStarts.length; k < block.starts.length; k++, at++) {
+            starts[at] = block.starts[k] + delta;
+        }
+        Expression.Block replaced = new Expression.Block(statements, starts);
+        replaced.first = block.first;
+        replaced.end = block.end + delta;
+        return replaced;
+    }
+}
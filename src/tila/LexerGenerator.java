@@ -0,0 +1,376 @@
+package tila;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Builds a minimized DFA from a LexerSpec (regex -> Thompson NFA -> subset
+// construction -> Moore minimization) and writes it out as dense tables for
+// TableLexer. Input characters are folded into equivalence classes first, so
+// the transition table is states x classes rather than states x 128.
+public class LexerGenerator {
+    static final int ALPHABET = 128;
+
+    static class Tables {
+        final byte[] classes;
+        final int classCount;
+        final int[] transitions;
+        final int[] accepts;
+
+        Tables(byte[] classes, int classCount, int[] transitions, int[] accepts) {
+            this.classes = classes;
+            this.classCount = classCount;
+            this.transitions = transitions;
+            this.accepts = accepts;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: generate_lexer <output directory>");
+            System.exit(64);
+        }
+        write(args[0], "LexerTables", generate(LexerSpec.TILA));
+    }
+
+    static Tables generate(List<LexerSpec.Rule> rules) {
+        Nfa nfa = new Nfa();
+        Nfa.State start = nfa.state();
+        for (int i = 0; i < rules.size(); i++) {
+            Nfa.Fragment fragment = new PatternParser(nfa, rules.get(i).pattern).parse();
+            start.epsilon.add(fragment.start);
+            fragment.end.rule = i;
+        }
+        List<int[]> rows = new ArrayList<>();
+        List<Integer> accepts = new ArrayList<>();
+        determinize(nfa, start, rules, rows, accepts);
+        return compress(minimize(rows, accepts));
+    }
+
+    // Subset construction over the ASCII alphabet. -1 is the dead state.
+    private static void determinize(Nfa nfa, Nfa.State start, List<LexerSpec.Rule> rules,
+                                    List<int[]> rows, List<Integer> accepts) {
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        BitSet initial = nfa.closure(singleton(start.id));
+        ids.put(initial, 0);
+        sets.add(initial);
+        for (int d = 0; d < sets.size(); d++) {
+            BitSet set = sets.get(d);
+            int[] row = new int[ALPHABET];
+            for (int c = 0; c < ALPHABET; c++) {
+                BitSet moved = new BitSet();
+                for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                    Nfa.State state = nfa.states.get(s);
+                    if (state.on != null && state.on[c]) moved.set(state.next.id);
+                }
+                if (moved.isEmpty()) {
+                    row[c] = -1;
+                    continue;
+                }
+                BitSet target = nfa.closure(moved);
+                Integer id = ids.get(target);
+                if (id == null) {
+                    id = sets.size();
+                    ids.put(target, id);
+                    sets.add(target);
+                }
+                row[c] = id;
+            }
+            rows.add(row);
+            int rule = Integer.MAX_VALUE;
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                int r = nfa.states.get(s).rule;
+                if (r >= 0) rule = Math.min(rule, r);
+            }
+            accepts.add(rule == Integer.MAX_VALUE ? -1 : rules.get(rule).accept);
+        }
+    }
+
+    private static BitSet singleton(int bit) {
+        BitSet set = new BitSet();
+        set.set(bit);
+        return set;
+    }
+
+    // Moore partition refinement. Block ids are handed out in state order, so
+    // the start state stays 0.
+    private static List<int[]> minimize(List<int[]> rows, List<Integer> accepts) {
+        int n = rows.size();
+        int[] block = new int[n];
+        int blocks = partition(n, s -> List.of(accepts.get(s)), block);
+        while (true) {
+            int[] current = block.clone();
+            int refined = partition(n, s -> {
+                List<Integer> signature = new ArrayList<>(ALPHABET + 1);
+                signature.add(current[s]);
+                for (int target : rows.get(s)) {
+                    signature.add(target < 0 ? -1 : current[target]);
+                }
+                return signature;
+            }, block);
+            if (refined == blocks) break;
+            blocks = refined;
+        }
+        List<int[]> minimized = new ArrayList<>(blocks);
+        for (int b = 0; b < blocks; b++) minimized.add(null);
+        for (int s = 0; s < n; s++) {
+            if (minimized.get(block[s]) != null) continue;
+            int[] row = new int[ALPHABET + 1];
+            for (int c = 0; c < ALPHABET; c++) {
+                int target = rows.get(s)[c];
+                row[c] = target < 0 ? -1 : block[target];
+            }
+            // The last column carries the accept code along.
+            row[ALPHABET] = accepts.get(s);
+            minimized.set(block[s], row);
+        }
+        return minimized;
+    }
+
+    private interface Signature {
+        List<Integer> of(int state);
+    }
+
+    private static int partition(int n, Signature signature, int[] block) {
+        Map<List<Integer>, Integer> ids = new HashMap<>();
+        for (int s = 0; s < n; s++) {
+            block[s] = ids.computeIfAbsent(signature.of(s), k -> ids.size());
+        }
+        return ids.size();
+    }
+
+    private static Tables compress(List<int[]> rows) {
+        byte[] classes = new byte[ALPHABET];
+        Map<List<Integer>, Integer> ids = new HashMap<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            List<Integer> column = new ArrayList<>(rows.size());
+            for (int[] row : rows) column.add(row[c]);
+            classes[c] = (byte) (int) ids.computeIfAbsent(column, k -> ids.size());
+        }
+        int classCount = ids.size();
+        int[] transitions = new int[rows.size() * classCount];
+        int[] accepts = new int[rows.size()];
+        for (int s = 0; s < rows.size(); s++) {
+            int[] row = rows.get(s);
+            for (int c = 0; c < ALPHABET; c++) {
+                transitions[s * classCount + classes[c]] = row[c];
+            }
+            accepts[s] = row[ALPHABET];
+        }
+        return new Tables(classes, classCount, transitions, accepts);
+    }
+
+    private static void write(String outputDir, String className, Tables tables) throws IOException {
+        String path = outputDir + "/" + className + ".java";
+        PrintWriter writer = new PrintWriter(path, "UTF-8");
+        writer.println("package tila;");
+        writer.println();
+        writer.println("// Generated by LexerGenerator from LexerSpec.TILA. Do not edit.");
+        writer.println("final class " + className + " {");
+        writer.println("    static final int CLASS_COUNT = " + tables.classCount + ";");
+        int[] classes = new int[tables.classes.length];
+        for (int c = 0; c < classes.length; c++) classes[c] = tables.classes[c];
+        writer.println("    static final byte[] CLASSES = bytes(" + encode(classes) + ");");
+        writer.println("    static final int[] TRANSITIONS = ints(" + encode(tables.transitions) + ");");
+        writer.println("    static final int[] ACCEPTS = ints(" + encode(tables.accepts) + ");");
+        writer.println();
+        writer.println("    // Values are stored off by one so that -1 fits in a char.");
+        writer.println("    private static int[] ints(String encoded) {");
+        writer.println("        int[] values = new int[encoded.length()];");
+        writer.println("        for (int i = 0; i < values.length; i++) values[i] = encoded.charAt(i) - 1;");
+        writer.println("        return values;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    private static byte[] bytes(String encoded) {");
+        writer.println("        byte[] values = new byte[encoded.length()];");
+        writer.println("        for (int i = 0; i < values.length; i++) values[i] = (byte) (encoded.charAt(i) - 1);");
+        writer.println("        return values;");
+        writer.println("    }");
+        writer.println("}");
+        writer.close();
+    }
+
+    private static String encode(int[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i % 16 == 0) builder.append(i == 0 ? "\"" : " +\n            \"");
+            int value = values[i] + 1;
+            // Octal escapes below 256: a \\u escape for a newline or quote would
+            // be translated before the string literal is even lexed.
+            builder.append(value < 256 ? String.format("\\%03o", value) : String.format("\\u%04x", value));
+            if (i % 16 == 15 || i == values.length - 1) builder.append('"');
+        }
+        return values.length == 0 ? "\"\"" : builder.toString();
+    }
+
+    private static class Nfa {
+        static class State {
+            final int id;
+            final List<State> epsilon = new ArrayList<>();
+            boolean[] on;
+            State next;
+            int rule = -1;
+
+            State(int id) {
+                this.id = id;
+            }
+        }
+
+        static class Fragment {
+            final State start;
+            final State end;
+
+            Fragment(State start, State end) {
+                this.start = start;
+                this.end = end;
+            }
+        }
+
+        final List<State> states = new ArrayList<>();
+
+        State state() {
+            State state = new State(states.size());
+            states.add(state);
+            return state;
+        }
+
+        BitSet closure(BitSet set) {
+            BitSet closure = (BitSet) set.clone();
+            ArrayDeque<Integer> work = new ArrayDeque<>();
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) work.push(s);
+            while (!work.isEmpty()) {
+                for (State target : states.get(work.pop()).epsilon) {
+                    if (!closure.get(target.id)) {
+                        closure.set(target.id);
+                        work.push(target.id);
+                    }
+                }
+            }
+            return closure;
+        }
+    }
+
+    private static class PatternParser {
+        private final Nfa nfa;
+        private final String pattern;
+        private int current = 0;
+
+        PatternParser(Nfa nfa, String pattern) {
+            this.nfa = nfa;
+            this.pattern = pattern;
+        }
+
+        Nfa.Fragment parse() {
+            Nfa.Fragment fragment = alternation();
+            if (current != pattern.length()) throw error("Unexpected '" + pattern.charAt(current) + "'");
+            return fragment;
+        }
+
+        private Nfa.Fragment alternation() {
+            Nfa.Fragment left = concatenation();
+            while (match('|')) {
+                Nfa.Fragment right = concatenation();
+                Nfa.State start = nfa.state();
+                Nfa.State end = nfa.state();
+                start.epsilon.add(left.start);
+                start.epsilon.add(right.start);
+                left.end.epsilon.add(end);
+                right.end.epsilon.add(end);
+                left = new Nfa.Fragment(start, end);
+            }
+            return left;
+        }
+
+        private Nfa.Fragment concatenation() {
+            Nfa.State start = nfa.state();
+            Nfa.Fragment result = new Nfa.Fragment(start, start);
+            while (current < pattern.length() && peek() != '|' && peek() != ')') {
+                Nfa.Fragment next = repetition();
+                result.end.epsilon.add(next.start);
+                result = new Nfa.Fragment(result.start, next.end);
+            }
+            return result;
+        }
+
+        private Nfa.Fragment repetition() {
+            Nfa.Fragment atom = atom();
+            while (current < pattern.length()) {
+                char op = peek();
+                if (op != '*' && op != '+' && op != '?') break;
+                current++;
+                Nfa.State start = nfa.state();
+                Nfa.State end = nfa.state();
+                start.epsilon.add(atom.start);
+                atom.end.epsilon.add(end);
+                if (op != '+') start.epsilon.add(end);
+                if (op != '?') atom.end.epsilon.add(atom.start);
+                atom = new Nfa.Fragment(start, end);
+            }
+            return atom;
+        }
+
+        private Nfa.Fragment atom() {
+            if (match('(')) {
+                Nfa.Fragment group = alternation();
+                if (!match(')')) throw error("Expect ')'");
+                return group;
+            }
+            boolean[] on = new boolean[ALPHABET];
+            if (match('[')) {
+                boolean negate = match('^');
+                while (!match(']')) {
+                    if (current >= pattern.length()) throw error("Expect ']'");
+                    char from = literal();
+                    char to = from;
+                    if (peek() == '-' && current + 1 < pattern.length() && pattern.charAt(current + 1) != ']') {
+                        current++;
+                        to = literal();
+                    }
+                    for (char c = from; c <= to; c++) on[c] = true;
+                }
+                if (negate) {
+                    for (int c = 0; c < ALPHABET; c++) on[c] = !on[c];
+                }
+            } else {
+                on[literal()] = true;
+            }
+            Nfa.State start = nfa.state();
+            Nfa.State end = nfa.state();
+            start.on = on;
+            start.next = end;
+            return new Nfa.Fragment(start, end);
+        }
+
+        private char literal() {
+            char c = pattern.charAt(current++);
+            if (c == '\\') {
+                c = pattern.charAt(current++);
+                if (c == 'n') return '\n';
+                if (c == 't') return '\t';
+                if (c == 'r') return '\r';
+            }
+            if (c >= ALPHABET) throw error("Non-ASCII character in pattern");
+            return c;
+        }
+
+        private char peek() {
+            return current < pattern.length() ? pattern.charAt(current) : '\0';
+        }
+
+        private boolean match(char expected) {
+            if (peek() != expected || current >= pattern.length()) return false;
+            current++;
+            return true;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " in pattern \"" + pattern + "\" at " + current);
+        }
+    }
+}
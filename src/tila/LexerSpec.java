@@ -0,0 +1,50 @@
+package tila;
+
+import java.util.List;
+
+import static tila.TokenType.*;
+
+// Declarative token patterns for LexerGenerator. Earlier rules win when two
+// rules match the same longest lexeme, which is how keywords beat IDENTIFIER.
+// Patterns support literals, [classes] with ranges and ^, (groups), |, *, + and ?.
+class LexerSpec {
+    // Accept codes past the TokenType ordinals, for input that makes no token.
+    static final int SKIP = TokenType.values().length;
+    static final int NEWLINE = SKIP + 1;
+
+    static class Rule {
+        final int accept;
+        final String pattern;
+
+        Rule(int accept, String pattern) {
+            this.accept = accept;
+            this.pattern = pattern;
+        }
+    }
+
+    static final List<Rule> TILA = List.of(
+            token(WHILE, "while"),
+            token(DO, "do"),
+            token(BEGIN, "begin"),
+            token(END, "end"),
+            token(PRINT, "print"),
+            token(INT, "int"),
+            token(IDENTIFIER, "[a-zA-Z_][a-zA-Z_0-9]*"),
+            token(NUMBER, "[0-9]+"),
+            token(LEFT_PAREN, "\\("),
+            token(RIGHT_PAREN, "\\)"),
+            token(MINUS, "-"),
+//            token(PLUS, "\\+"),
+            token(CARET, "\\^"),
+            token(STAR, "\\*"),
+//            token(SLASH, "/"),
+            token(SEMICOLON, ";"),
+            token(EQUAL, "="),
+            new Rule(SKIP, "[ \\t\\r]+"),
+            new Rule(NEWLINE, "\\n")
+    );
+
+    private static Rule token(TokenType type, String pattern) {
+        return new Rule(type.ordinal(), pattern);
+    }
+}
@@ -0,0 +1,85 @@
+package tila;
+
+// Generated by LexerGenerator from LexerSpec.TILA. Do not edit.
+final class LexerTables {
+    static final int CLASS_COUNT = 25;
+    static final byte[] CLASSES = bytes("\001\001\001\001\001\001\001\001\001\002\003\001\001\002\001\001" +
+            "\001\001\001\001\001\001\001\001\001\001\001\001\001\001\001\001" +
+            "\002\001\001\001\001\001\001\001\004\005\006\001\001\007\001\001" +
+            "\010\010\010\010\010\010\010\010\010\010\001\011\001\012\001\001" +
+            "\001\013\013\013\013\013\013\013\013\013\013\013\013\013\013\013" +
+            "\013\013\013\013\013\013\013\013\013\013\013\001\001\001\014\013" +
+            "\001\013\015\013\016\017\013\020\021\022\013\013\023\013\024\025" +
+            "\026\013\027\013\030\013\013\031\013\013\013\001\001\001\001\001");
+    static final int[] TRANSITIONS = ints("\000\002\003\004\005\006\007\010\011\012\013\014\015\016\017\013" +
+            "\013\020\013\013\013\021\013\013\022\000\002\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\010\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\013\000\000\013\000\013\013\013\013\013\013\013\013\013\013" +
+            "\013\013\013\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000\000" +
+            "\000\000\000\013\000\000\013\000\013\013\023\013\013\013\013\013" +
+            "\013\013\013\013\013\000\000\000\000\000\000\000\013\000\000\013" +
+            "\000\013\013\013\013\013\013\013\013\024\013\013\013\013\000\000" +
+            "\000\000\000\000\000\013\000\000\013\000\013\013\013\013\013\013" +
+            "\013\025\013\013\013\013\013\000\000\000\000\000\000\000\013\000" +
+            "\000\013\000\013\013\013\013\013\013\013\026\013\013\013\013\013" +
+            "\000\000\000\000\000\000\000\013\000\000\013\000\013\013\013\013" +
+            "\013\013\013\013\013\013\027\013\013\000\000\000\000\000\000\000" +
+            "\013\000\000\013\000\013\013\013\013\030\013\013\013\013\013\013" +
+            "\013\013\000\000\000\000\000\000\000\013\000\000\013\000\013\013" +
+            "\013\031\013\013\013\013\013\013\013\013\013\000\000\000\000\000" +
+            "\000\000\013\000\000\013\000\013\013\013\013\013\013\013\013\013" +
+            "\013\013\013\013\000\000\000\000\000\000\000\013\000\000\013\000" +
+            "\013\032\013\013\013\013\013\013\013\013\013\013\013\000\000\000" +
+            "\000\000\000\000\013\000\000\013\000\013\013\013\013\013\013\013" +
+            "\013\013\013\013\033\013\000\000\000\000\000\000\000\013\000\000" +
+            "\013\000\013\013\013\013\013\034\013\013\013\013\013\013\013\000" +
+            "\000\000\000\000\000\000\013\000\000\013\000\013\013\013\013\013" +
+            "\035\013\013\013\013\013\013\013\000\000\000\000\000\000\000\013" +
+            "\000\000\013\000\013\013\013\013\013\036\013\013\013\013\013\013" +
+            "\013\000\000\000\000\000\000\000\013\000\000\013\000\013\013\013" +
+            "\013\013\013\013\013\013\013\013\013\013\000\000\000\000\000\000" +
+            "\000\013\000\000\013\000\013\013\013\013\013\013\013\013\013\013" +
+            "\013\013\013\000\000\000\000\000\000\000\013\000\000\013\000\013" +
+            "\013\013\013\013\013\013\037\013\013\013\013\013\000\000\000\000" +
+            "\000\000\000\013\000\000\013\000\013\013\013\013\013\013\040\013" +
+            "\013\013\013\013\013\000\000\000\000\000\000\000\013\000\000\013" +
+            "\000\013\013\013\013\013\013\013\041\013\013\013\013\013\000\000" +
+            "\000\000\000\000\000\013\000\000\013\000\013\013\013\013\013\013" +
+            "\013\013\013\013\013\042\013\000\000\000\000\000\000\000\013\000" +
+            "\000\013\000\013\013\043\013\013\013\013\013\013\013\013\013\013" +
+            "\000\000\000\000\000\000\000\013\000\000\013\000\013\013\013\013" +
+            "\013\013\013\013\013\013\013\013\013\000\000\000\000\000\000\000" +
+            "\013\000\000\013\000\013\013\013\013\013\013\013\013\013\013\013" +
+            "\013\013\000\000\000\000\000\000\000\013\000\000\013\000\013\013" +
+            "\013\013\013\013\013\013\013\013\013\013\013");
+    static final int[] ACCEPTS = ints("\000\023\024\001\002\005\003\013\004\007\011\006\011\011\011\011" +
+            "\011\011\011\016\011\011\011\011\011\020\021\011\011\011\011\011" +
+            "\017\014\015");
+
+    // Values are stored off by one so that -1 fits in a char.
+    private static int[] ints(String encoded) {
+        int[] values = new int[encoded.length()];
+        for (int i = 0; i < values.length; i++) values[i] = encoded.charAt(i) - 1;
+        return values;
+    }
+
+    private static byte[] bytes(String encoded) {
+        byte[] values = new byte[encoded.length()];
+        for (int i = 0; i < values.length; i++) values[i] = (byte) (encoded.charAt(i) - 1);
+        return values;
+    }
+}
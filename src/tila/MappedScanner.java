@@ -0,0 +1,214 @@
+package tila;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static tila.TokenType.*;
+
+// Byte-level scanner over a memory-mapped file. Tila source is pure ASCII,
+// so bytes are scanned directly without decoding the file into a String.
+class MappedScanner {
+    private static final long ASCII_MASK = 0x8080808080808080L;
+
+    private final ByteBuffer source;
+    private final int length;
+    private final TokenBuffer tokens;
+    private int start = 0;
+    private int current = 0;
+    private int currentInLine = 1;
+    private int line = 1;
+    private int column = 1;
+
+    MappedScanner(ByteBuffer source) {
+        this.source = source;
+        this.length = source.limit();
+        this.tokens = new TokenBuffer(new AsciiSequence(source, 0, length), length / 4);
+    }
+
+    // The channel must stay open until the returned cursor is exhausted.
+    static TokenCursor scan(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size <= Integer.MAX_VALUE) {
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (isAscii(bytes)) return new MappedScanner(bytes).scanTokens().cursor();
+        }
+        // Too large for a single mapping, or not ASCII: scan lazily through the streaming scanner.
+        channel.position(0);
+        return new StreamScanner(channel).cursor();
+    }
+
+    // The whole file as characters for the scanners that take a
+    // CharSequence: a view of the mapped bytes when they are ASCII, otherwise
+    // UTF-8 with malformed input replaced, so a stray byte is scanned as an
+    // unexpected character, as the other modes report it.
+    static CharSequence read(Path file) throws IOException {
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file)) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (isAscii(bytes)) return new AsciiSequence(bytes, 0, bytes.limit());
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    static boolean isAscii(ByteBuffer bytes) {
+        int limit = bytes.limit();
+        int i = 0;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if ((bytes.getLong(i) & ASCII_MASK) != 0) return false;
+        }
+        for (; i < limit; i++) {
+            if (bytes.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    TokenBuffer scanTokens() {
+        while (!isAtEnd()) {
+            // We are at the beginning of the next lexeme.
+            start = current;
+            column = currentInLine;
+            scanToken();
+        }
+        column = currentInLine;
+        tokens.add(EOF, current, 0, line, column, 0);
+        return tokens;
+    }
+
+    private boolean isAtEnd() {
+        return current >= length;
+    }
+
+    private void scanToken() {
+        char c = advance();
+        switch (c) {
+            case '(':
+                addToken(LEFT_PAREN);
+                break;
+            case ')':
+                addToken(RIGHT_PAREN);
+                break;
+            case '-':
+                addToken(MINUS);
+                break;
+            case '^':
+                addToken(CARET);
+                break;
+            case '*':
+                addToken(STAR);
+                break;
+            case ';':
+                addToken(SEMICOLON);
+                break;
+            case '=':
+                addToken(EQUAL);
+                break;
+            case ' ':
+            case '\r':
+            case '\t':
+                break;
+            case '\n':
+                currentInLine = 1;
+                line++;
+                break;
+            default:
+                if (Scanner.isDigit(c)) {
+                    number();
+                } else if (Scanner.isAlpha(c)) {
+                    identifier();
+                } else {
+                    Tila.error(line, column, String.format("Unexpected character \"%s\"", c));
+                }
+                break;
+        }
+    }
+
+    private char advance() {
+        current++;
+        currentInLine++;
+        return (char) source.get(current - 1);
+    }
+
+    private char peek() {
+        if (isAtEnd()) return '\0';
+        return (char) source.get(current);
+    }
+
+    private String text() {
+        return tokens.source().subSequence(start, current).toString();
+    }
+
+    private void addToken(TokenType type) {
+        addToken(type, 0);
+    }
+
+    private void addToken(TokenType type, long literal) {
+        tokens.add(type, start, current - start, line, column, literal);
+    }
+
+    private void number() {
+        long value = source.get(start) - '0';
+        boolean overflow = false;
+        while (Scanner.isDigit(peek())) {
+            int digit = advance() - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                overflow = true;
+            } else {
+                value = value * 10 + digit;
+            }
+        }
+        if (source.get(start) == '0' && current - start > 1) {
+            Tila.error(line, column, String.format("Unexpected number \"%s\"", text()));
+        } else if (overflow) {
+            Tila.error(line, column, String.format("Number too large \"%s\"", text()));
+        } else {
+            addToken(NUMBER, value);
+        }
+    }
+
+    private void identifier() {
+        while (Scanner.isAlphaNumeric(peek())) advance();
+        SymbolTable symbols = tokens.symbols();
+        int symbol = symbols.intern(tokens.source(), start, current);
+        addToken(symbols.type(symbol), symbol);
+    }
+
+    // Read-only char view of ASCII bytes, used to slice lexemes lazily.
+    static class AsciiSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiSequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] copy = new byte[length];
+            for (int i = 0; i < length; i++) {
+                copy[i] = bytes.get(offset + i);
+            }
+            return new String(copy, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package tila;
+
+import java.util.Arrays;
+
+// Hash-consing for the pure expression nodes, Binary, Grouping and Literal:
+// asking for a node equal to one already built returns that node, so each
+// distinct subexpression exists once however often the program repeats it,
+// and anything computed per node is computed once per distinct subtree.
+// Children are handed out by the factory too, so two nodes are equal exactly
+// when their kinds and tokens are equal and their children are the same
+// objects; neither lookup nor hashing has to descend into a subtree.
+//
+// The table is bounded: once it holds maxNodes nodes it is emptied and
+// starts over. Nodes built before that stay valid, they are only no longer
+// shared with the ones built after it. Statements are never shared, since
+// ParserRec keeps their spans and Block starts for IncrementalParser.
+class NodeFactory {
+    private static final int DEFAULT_MAX_NODES = 1 << 20;
+
+    private final int maxNodes;
+    // Open addressing as in SymbolTable, the node itself in each slot.
+    private Expression[] slots = new Expression[64];
+    private int[] hashes = new int[64];
+    private int size = 0;
+
+    NodeFactory() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    NodeFactory(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    Expression binary(Expression left, Token operator, Expression right) {
+        int hash = hash(hash(hash(Expression.BINARY, left), operator), right);
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        for (Expression node; (node = slots[slot]) != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] != hash || node.kind != Expression.BINARY) continue;
+            Expression.Binary binary = (Expression.Binary) node;
+            if (binary.left == left && binary.right == right && binary.operator.equals(operator)) return binary;
+        }
+        return add(slot, hash, new Expression.Binary(left, operator, right));
+    }
+
+    Expression grouping(Expression expression) {
+        int hash = hash(Expression.GROUPING, expression);
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        for (Expression node; (node = slots[slot]) != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] != hash || node.kind != Expression.GROUPING) continue;
+            Expression.Grouping grouping = (Expression.Grouping) node;
+            if (grouping.expression == expression) return grouping;
+        }
+        return add(slot, hash, new Expression.Grouping(expression));
+    }
+
+    Expression literal(Token value) {
+        int hash = hash(Expression.LITERAL, value);
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        for (Expression node; (node = slots[slot]) != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] != hash || node.kind != Expression.LITERAL) continue;
+            Expression.Literal literal = (Expression.Literal) node;
+            if (value.equals(literal.value)) return literal;
+        }
+        return add(slot, hash, new Expression.Literal(value));
+    }
+
+    // Nodes that are already shared are told apart by identity.
+    private static int hash(int hash, Expression child) {
+        return 31 * hash + System.identityHashCode(child);
+    }
+
+    private static int hash(int hash, Token token) {
+        return 31 * hash + token.hashCode();
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private Expression add(int slot, int hash, Expression node) {
+        if (size == maxNodes) {
+            clear();
+            slot = mix(hash) & (slots.length - 1);
+        }
+        slots[slot] = node;
+        hashes[slot] = hash;
+        size++;
+        if (size * 2 > slots.length) rehash();
+        return node;
+    }
+
+    private void clear() {
+        Arrays.fill(slots, null);
+        size = 0;
+    }
+
+    private void rehash() {
+        Expression[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new Expression[oldSlots.length * 2];
+        hashes = new int[slots.length];
+        int mask = slots.length - 1;
+        for (int old = 0; old < oldSlots.length; old++) {
+            if (oldSlots[old] == null) continue;
+            int slot = mix(oldHashes[old]) & mask;
+            while (slots[slot] != null) slot = (slot + 1) & mask;
+            slots[slot] = oldSlots[old];
+            hashes[slot] = oldHashes[old];
+        }
+    }
+
+    // Distinct nodes currently shared.
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,84 @@
+package tila;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static tila.TokenType.BEGIN;
+
+// Top-level statements only meet at a ';' outside every loop body, so the
+// tokens between 'begin' and 'end' can be cut there into regions that each
+// parse on their own. The regions' statements are concatenated back into the
+// one Block ParserRec would have built.
+class ParallelParser {
+    private static final int MIN_REGION_SIZE = 1 << 16;
+
+    private final TokenBuffer tokens;
+    private final ForkJoinPool pool;
+    private final int minRegionSize;
+
+    ParallelParser(TokenBuffer tokens) {
+        this(tokens, ForkJoinPool.commonPool(), MIN_REGION_SIZE);
+    }
+
+    ParallelParser(TokenBuffer tokens, ForkJoinPool pool, int minRegionSize) {
+        this.tokens = tokens;
+        this.pool = pool;
+        this.minRegionSize = minRegionSize;
+    }
+
+    Expression parse() {
+        int[] bounds = split();
+        int regions = bounds.length - 1;
+        if (regions < 2) return new ParserRec(tokens.cursor()).parse();
+
+        // Each region reports into its own diagnostics; they are replayed in
+        // source order once every region is done.
+        Diagnostics[] diagnostics = new Diagnostics[regions];
+        List<ForkJoinTask<Expression.Block>> parses = new ArrayList<>(regions);
+        for (int i = 0; i < regions - 1; i++) {
+            Diagnostics regionDiagnostics = diagnostics[i] = new Diagnostics();
+            TokenCursor cursor = tokens.cursor(bounds[i], bounds[i + 1]);
+            parses.add(pool.submit(() -> new ParserRec(cursor, regionDiagnostics).region()));
+        }
+        // The last region runs on to the closing 'end', parsed on this thread.
+        Diagnostics last = diagnostics[regions - 1] = new Diagnostics();
+        ParserRec tail = new ParserRec(tokens.cursor(bounds[regions - 1], tokens.size() - 1), last);
+        Expression.Block tailBlock = tail.region();
+        tail.close();
+
+        Expression.Block[] parts = new Expression.Block[regions];
+        int size = tailBlock.statements.size();
+        for (int i = 0; i < regions - 1; i++) {
+            parts[i] = parses.get(i).join();
+            size += parts[i].statements.size();
+        }
+        parts[regions - 1] = tailBlock;
+
+        // Region spans are relative to the region; the Block's are relative
+        // to its own first token, just after the 'begin'.
+        List<Expression> statements = new ArrayList<>(size);
+        int[] starts = new int[size];
+        for (int i = 0; i < regions; i++) {
+            int offset = bounds[i] - bounds[0];
+            int at = statements.size();
+            for (int start : parts[i].starts) starts[at++] = offset + start;
+            statements.addAll(parts[i].statements);
+            diagnostics[i].report(0);
+        }
+        Expression.Block block = new Expression.Block(statements, starts);
+        block.first = bounds[0];
+        block.end = bounds[regions - 1] + tailBlock.end;
+        Expression.Program program = new Expression.Program(block);
+        program.end = bounds[regions - 1] + tail.position();
+        return program;
+    }
+
+    private int[] split() {
+        int size = tokens.size();
+        if (pool.getParallelism() < 2 || size < 2 || tokens.type(0) != BEGIN) return new int[]{0, size - 1};
+        int step = Math.max(minRegionSize, size / (pool.getParallelism() * 4));
+        return tokens.regions(step);
+    }
+}
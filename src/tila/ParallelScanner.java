@@ -0,0 +1,114 @@
+package tila;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Tila has no token that spans a newline, so the source can be cut at line
+// boundaries and each piece scanned on its own. The pieces are then stitched
+// back together into exactly what Scanner.scanBuffer would have produced.
+class ParallelScanner {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    private final CharSequence source;
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+
+    ParallelScanner(CharSequence source) {
+        this(source, ForkJoinPool.commonPool(), MIN_CHUNK_SIZE);
+    }
+
+    ParallelScanner(CharSequence source, ForkJoinPool pool, int minChunkSize) {
+        this.source = source;
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+    }
+
+    List<Token> scanTokens() {
+        return scanBuffer().toList();
+    }
+
+    TokenBuffer scanBuffer() {
+        int[] bounds = split();
+        int chunks = bounds.length - 1;
+        if (chunks == 1) return new Scanner(source).scanBuffer();
+
+        Diagnostics[] diagnostics = new Diagnostics[chunks];
+        List<ForkJoinTask<TokenBuffer>> scans = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            Diagnostics chunkDiagnostics = diagnostics[i] = new Diagnostics();
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            scans.add(pool.submit(() -> new Scanner(source, from, to, chunkDiagnostics).scanBuffer()));
+        }
+
+        // Sequential pass over the chunks, in source order: output positions,
+        // line offsets, symbol ids in order of first use, and errors.
+        TokenBuffer result = new TokenBuffer(source, 0);
+        SymbolTable symbols = result.symbols();
+        TokenBuffer[] parts = new TokenBuffer[chunks];
+        int[] positions = new int[chunks];
+        int[] lineOffsets = new int[chunks];
+        int[][] symbolMaps = new int[chunks][];
+        int size = 0;
+        int lineOffset = 0;
+        for (int i = 0; i < chunks; i++) {
+            TokenBuffer part = parts[i] = scans.get(i).join();
+            SymbolTable local = part.symbols();
+            int[] symbolMap = symbolMaps[i] = new int[local.size()];
+            for (int symbol = 0; symbol < symbolMap.length; symbol++) {
+                String name = local.name(symbol);
+                symbolMap[symbol] = symbols.intern(name, 0, name.length());
+            }
+            diagnostics[i].report(lineOffset);
+
+            positions[i] = size;
+            lineOffsets[i] = lineOffset;
+            // Every chunk ends with its own EOF; only the last one is kept.
+            int eof = part.size() - 1;
+            size += i == chunks - 1 ? part.size() : eof;
+            lineOffset += part.line(eof) - 1;
+        }
+
+        result.resize(size);
+        List<ForkJoinTask<?>> copies = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            TokenBuffer part = parts[i];
+            int count = i == chunks - 1 ? part.size() : part.size() - 1;
+            int at = positions[i];
+            int offset = lineOffsets[i];
+            int[] symbolMap = symbolMaps[i];
+            copies.add(pool.submit(() -> result.copyFrom(part, 0, count, at, offset, symbolMap)));
+        }
+        for (ForkJoinTask<?> copy : copies) {
+            copy.join();
+        }
+        return result;
+    }
+
+    private int[] split() {
+        int length = source.length();
+        if (pool.getParallelism() < 2) return new int[]{0, length};
+        int chunkSize = Math.max(minChunkSize, length / (pool.getParallelism() * 4));
+        int[] bounds = new int[length / Math.max(chunkSize, 1) + 2];
+        int count = 1;
+        int from = 0;
+        while (length - from > chunkSize) {
+            int newline = indexOf('\n', from + chunkSize);
+            if (newline < 0) break;
+            from = newline + 1;
+            bounds[count++] = from;
+        }
+        if (count == 1 || bounds[count - 1] < length) bounds[count++] = length;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from, length = source.length(); i < length; i++) {
+            if (source.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+}
@@ -1,219 +1,246 @@
 package tila;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static tila.ExpressionEnum.Expr;
 import static tila.ExpressionEnum.*;
 import static tila.TokenType.*;
 
 public class Parser {
-    private int current = 0;
+    private final TokenCursor tokens;
+    private final Diagnostics diagnostics;
 
-
-    private final List<Token> tokens;
-
-    static List<ITokenType> TERMINATES = List.of(LEFT_PAREN, RIGHT_PAREN, MINUS, SEMICOLON, STAR, CARET, EQUAL, IDENTIFIER, STRING, NUMBER, PRINT, WHILE, DO, BEGIN, END, INT, EOF, EPSILON);
-    static List<ITokenType> NON_TERMINATES = List.of(Program, Statements, Statement, Decl, Assigment, Loop, Type, Expr, Expr1, Expr2, Expr3, Expr4, Expr5, Expr6, Expr7);
     static List<Grammar> GRAMMAR = new ArrayList<>() {{
-        add(new Grammar(Program, List.of(BEGIN, Statements, END, EOF)));
-        add(new Grammar(Statements, List.of(Statement, SEMICOLON, Statements)));
-        add(new Grammar(Statements, List.of(EPSILON)));
-        add(new Grammar(Statement, List.of(Decl)));
-        add(new Grammar(Statement, List.of(Assigment)));
-        add(new Grammar(Statement, List.of(Loop)));
-        add(new Grammar(Statement, List.of(PRINT, Expr)));
-        add(new Grammar(Decl, List.of(Type, IDENTIFIER, SEMICOLON, Decl)));
-        add(new Grammar(Decl, List.of(EPSILON)));
-        add(new Grammar(Type, List.of(INT)));
-        add(new Grammar(Assigment, List.of(IDENTIFIER, EQUAL, Expr)));
-        add(new Grammar(Expr, List.of(Expr1, Expr2)));
-        add(new Grammar(Expr2, List.of(MINUS, Expr1, Expr2)));
-        add(new Grammar(Expr2, List.of(EPSILON)));
-        add(new Grammar(Expr1, List.of(Expr3, Expr4)));
-        add(new Grammar(Expr4, List.of(STAR, Expr3, Expr4)));
-        add(new Grammar(Expr4, List.of(EPSILON)));
-        add(new Grammar(Expr3, List.of(Expr5, Expr7)));
-        add(new Grammar(Expr7, List.of(CARET, Expr3)));
-        add(new Grammar(Expr7, List.of(EPSILON)));
-        add(new Grammar(Expr5, List.of(LEFT_PAREN, Expr6, RIGHT_PAREN)));
-        add(new Grammar(Expr5, List.of(Expr6)));
-        add(new Grammar(Expr6, List.of(IDENTIFIER)));
-        add(new Grammar(Expr6, List.of(NUMBER)));
-        add(new Grammar(Loop, List.of(WHILE, Expr, DO, BEGIN, Statements, END)));
+        add(new Grammar(Program, List.of(BEGIN, Statements, END, EOF), "new Expression.Program(Parser.reverse($1))",
+                (v, f) -> new Expression.Program(reverse(node(v[f + 1])))));
+        add(new Grammar(Statements, List.of(Statement, SEMICOLON, Statements), "Parser.append($0, $2)",
+                (v, f) -> append(node(v[f]), node(v[f + 2]))));
+        add(new Grammar(Statements, List.of(EPSILON), "new Expression.Block(new ArrayList<>(), null)",
+                (v, f) -> new Expression.Block(new ArrayList<>(), null)));
+        add(new Grammar(Statement, List.of(Decl), "$0",
+                (v, f) -> v[f]));
+        add(new Grammar(Statement, List.of(Assigment), "$0",
+                (v, f) -> v[f]));
+        add(new Grammar(Statement, List.of(Loop), "$0",
+                (v, f) -> v[f]));
+        add(new Grammar(Statement, List.of(PRINT, Expr), "new Expression.Unary($0, $1)",
+                (v, f) -> new Expression.Unary((Token) v[f], node(v[f + 1]))));
+        add(new Grammar(Decl, List.of(Type, IDENTIFIER), "new Expression.Decl($0, $1)",
+                (v, f) -> new Expression.Decl((Token) v[f], (Token) v[f + 1])));
+        add(new Grammar(Type, List.of(INT), "$0",
+                (v, f) -> v[f]));
+        add(new Grammar(Assigment, List.of(IDENTIFIER, EQUAL, Expr), "new Expression.Assignment($0, $2)",
+                (v, f) -> new Expression.Assignment((Token) v[f], node(v[f + 2]))));
+        add(new Grammar(Expr, List.of(Expr1, Expr2), "Parser.fold($0, $1)",
+                (v, f) -> fold(node(v[f]), node(v[f + 1]))));
+        add(new Grammar(Expr2, List.of(MINUS, Expr1, Expr2), "new Expression.Calculation($0, $1, $2)",
+                (v, f) -> new Expression.Calculation((Token) v[f], node(v[f + 1]), node(v[f + 2]))));
+        add(new Grammar(Expr2, List.of(EPSILON), "new Expression.Epsilon()",
+                (v, f) -> new Expression.Epsilon()));
+        add(new Grammar(Expr1, List.of(Expr3, Expr4), "Parser.fold($0, $1)",
+                (v, f) -> fold(node(v[f]), node(v[f + 1]))));
+        add(new Grammar(Expr4, List.of(STAR, Expr3, Expr4), "new Expression.Calculation($0, $1, $2)",
+                (v, f) -> new Expression.Calculation((Token) v[f], node(v[f + 1]), node(v[f + 2]))));
+        add(new Grammar(Expr4, List.of(EPSILON), "new Expression.Epsilon()",
+                (v, f) -> new Expression.Epsilon()));
+        add(new Grammar(Expr3, List.of(Expr5, Expr7), "Parser.fold($0, $1)",
+                (v, f) -> fold(node(v[f]), node(v[f + 1]))));
+        add(new Grammar(Expr7, List.of(CARET, Expr3), "new Expression.Unary($0, $1)",
+                (v, f) -> new Expression.Unary((Token) v[f], node(v[f + 1]))));
+        add(new Grammar(Expr7, List.of(EPSILON), "new Expression.Epsilon()",
+                (v, f) -> new Expression.Epsilon()));
+        add(new Grammar(Expr5, List.of(LEFT_PAREN, Expr, RIGHT_PAREN), "new Expression.Grouping($1)",
+                (v, f) -> new Expression.Grouping(node(v[f + 1]))));
+        add(new Grammar(Expr5, List.of(Expr6), "$0",
+                (v, f) -> v[f]));
+        add(new Grammar(Expr6, List.of(IDENTIFIER), "new Expression.Literal($0)",
+                (v, f) -> new Expression.Literal((Token) v[f])));
+        add(new Grammar(Expr6, List.of(NUMBER), "new Expression.Literal($0)",
+                (v, f) -> new Expression.Literal((Token) v[f])));
+        add(new Grammar(Loop, List.of(WHILE, Expr, DO, BEGIN, Statements, END), "new Expression.While($1, Parser.reverse($4))",
+                (v, f) -> new Expression.While(node(v[f + 1]), reverse(node(v[f + 4])))));
     }};
 
     Parser(List<Token> tokens) {
+        this(new TokenCursor.ListCursor(tokens));
+    }
+
+    Parser(TokenCursor tokens) {
+        this(tokens, null);
+    }
+
+    // The syntax error goes to diagnostics when one is given, otherwise
+    // straight to Tila.error.
+    Parser(TokenCursor tokens, Diagnostics diagnostics) {
         this.tokens = tokens;
+        this.diagnostics = diagnostics;
     }
 
-    static Map<ITokenType, List<ITokenType>> FIRST = new HashMap<>();
-    static Map<ITokenType, List<ITokenType>> FOLLOW = new HashMap<>();
-    static Map<ITokenType, List<ITokenType>> FIRST_PLUS = new HashMap<>();
+    // Negative entries on the driver's stack mark the point where production
+    // -(entry + 1) is reduced; see ParserTables for the other symbols.
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final int NON_TERMINAL = ParserTables.NON_TERMINAL;
+    private static final ParserTables TABLES = ParserTables.load(GRAMMAR, Program);
+    // TABLE[nonterminal][token] is the production to expand, or -1.
+    static final int[][] TABLE = TABLES.table;
+    private static final int[][] RIGHT = TABLES.right;
 
     private static class ParseError extends RuntimeException {
+        ParseError() {
+            super(null, null, false, false);
+        }
     }
 
-    static void first() {
-        for (ITokenType terminate : Stream.concat(TERMINATES.stream(), Stream.of(EOF, EPSILON)).collect(Collectors.toList())) {
-            FIRST.put(terminate, new ArrayList<>() {{
-                add(terminate);
-            }});
-        }
-        for (ITokenType nt : NON_TERMINATES) {
-            FIRST.put(nt, new ArrayList<>());
-        }
+    private static final ParseError PARSE_ERROR = new ParseError();
 
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            for (Grammar grammar : GRAMMAR) {
-                List<ITokenType> right = grammar.right;
-                ITokenType firstRight = right.get(0);
-                List<ITokenType> rhs = new ArrayList<>();
-                int i = -1;
-                if (TERMINATES.contains(firstRight) || NON_TERMINATES.contains(firstRight)) {
-                    rhs = FIRST.get(firstRight).stream().filter(a -> a != EPSILON).collect(Collectors.toList());
-                    i = 0;
-                    while (FIRST.get(right.get(i)).contains(EPSILON) && i <= right.size() - 2) {
-                        rhs.addAll(FIRST.get(right.get(i + 1)).stream().filter(a -> a != EPSILON).collect(Collectors.toList()));
-                        i = i + 1;
-                    }
-                }
-                if (i == right.size() - 1 && FIRST.get(right.get(right.size() - 1)).contains(EPSILON)) {
-                    rhs.add(EPSILON);
-                }
-                changed = changed || rhs.stream().anyMatch(e -> !FIRST.get(grammar.left).contains(e));
-                FIRST.get(grammar.left).addAll(rhs);
-                FIRST.put(grammar.left, new ArrayList<>(new HashSet<>(FIRST.get(grammar.left))));
-            }
-        }
+    private static Expression node(Object value) {
+        return (Expression) value;
     }
 
-    static void follow() {
-        for (ITokenType nt : NON_TERMINATES) {
-            FOLLOW.put(nt, new ArrayList<>());
+    // Folds the tail an LL(1) grammar leaves behind, a Calculation chain for
+    // a left-associative operator or a Unary for a right-associative one,
+    // onto its left operand.
+    static Expression fold(Expression left, Expression tail) {
+        while (tail.kind == Expression.CALCULATION) {
+            Expression.Calculation calculation = (Expression.Calculation) tail;
+            left = new Expression.Binary(left, calculation.operator, calculation.middle);
+            tail = calculation.right;
         }
-        FOLLOW.put(Program, new ArrayList<>() {{
-            add(EOF);
-        }});
-
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-            for (Grammar grammar : GRAMMAR) {
-                List<ITokenType> right = grammar.right;
-                List<ITokenType> trailer = FOLLOW.get(grammar.left);
-                for (int i = right.size() - 1; i >= 0; i--) {
-                    ITokenType beta = right.get(i);
-                    if (NON_TERMINATES.contains(beta)) {
-                        changed = changed || trailer.stream().anyMatch(e -> !FOLLOW.get(beta).contains(e));
-                        FOLLOW.get(beta).addAll(trailer);
-                        FOLLOW.put(beta, new ArrayList<>(new HashSet<>(FOLLOW.get(beta))));
-//                        FOLLOW.put(beta, FOLLOW.get(beta));
-
-
-                        if (FIRST.get(beta).contains(EPSILON)) {
-                            trailer.addAll(FIRST.get(beta).stream().filter(a -> a != EPSILON).collect(Collectors.toList()));
-                        } else {
-                            trailer = FIRST.get(beta);
-                        }
-                    } else {
-                        trailer = FIRST.get(beta);
-                    }
-                }
-            }
+        if (tail.kind == Expression.UNARY) {
+            Expression.Unary unary = (Expression.Unary) tail;
+            return new Expression.Binary(left, unary.operator, unary.right);
         }
+        return left;
     }
 
-    static void firstPlus() {
-        for (Grammar grammar : GRAMMAR) {
-            List<ITokenType> first = FIRST.get(grammar.right.get(0));
-            List<ITokenType> follow = FOLLOW.get(grammar.left);
-
-            if (first.contains(EPSILON)) {
-                grammar.firstPlus = first;
-            } else {
-                grammar.firstPlus = Stream.concat(first.stream(), follow.stream()).collect(Collectors.toList());
-            }
+    // An LL(1) parser reduces the last statement of a list first, so it
+    // appends in reverse and flips the list once the list is complete.
+    static Expression append(Expression statement, Expression block) {
+        ((Expression.Block) block).statements.add(statement);
+        return block;
+    }
 
-            System.out.print(grammar.left);
-            System.out.print(grammar.right);
-            System.out.println(grammar.firstPlus);
-        }
+    static Expression reverse(Expression block) {
+        Collections.reverse(((Expression.Block) block).statements);
+        return block;
     }
 
     public static void main(String[] args) {
-        first();
-        follow();
-        firstPlus();
-
-//        FIRST.entrySet().stream().forEach(e -> {
-//            System.out.print(e.getKey());
-//            System.out.println(e.getValue());
-//        });
-        System.out.println(FIRST);
-        System.out.println(FOLLOW);
-
-        Parser parser = new Parser(List.of());
-        Token word = parser.peek();
-        if (parser.program()) {
-
+        GrammarAnalysis analysis = new GrammarAnalysis(GRAMMAR, Program);
+        for (int p = 0; p < GRAMMAR.size(); p++) {
+            System.out.println(GrammarAnalysis.describe(GRAMMAR.get(p)) + "  " + GrammarAnalysis.tokens(analysis.firstPlus(p)));
+        }
+        for (ExpressionEnum nonTerminal : ExpressionEnum.values()) {
+            System.out.println("FIRST(" + nonTerminal + ") = " + GrammarAnalysis.tokens(analysis.first(nonTerminal))
+                    + "  FOLLOW(" + nonTerminal + ") = " + GrammarAnalysis.tokens(analysis.follow(nonTerminal)));
         }
-
-
-    }
-
-    private ParseError error(Token token, String message) {
-        Tila.error(token, message);
-        return new ParseError();
     }
 
-    private boolean check(TokenType type) {
-        if (isAtEnd()) return false;
-        return peek().type == type;
+    Expression parse() {
+        try {
+            return program();
+        } catch (ParseError error) {
+            return null;
+        }
     }
 
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
+    // Expands and matches off an explicit stack, so nesting depth and
+    // statement count are bounded by the heap rather than the call stack.
+    private Expression program() {
+        int[] stack = new int[64];
+        int top = 0;
+        Object[] values = new Object[64];
+        int count = 0;
+
+        stack[top++] = ParserTables.symbol(Program);
+        while (top > 0) {
+            int symbol = stack[--top];
+            if (symbol < 0) {
+                int p = -(symbol + 1);
+                count -= RIGHT[p].length;
+                if (count == values.length) values = Arrays.copyOf(values, count * 2);
+                values[count] = GRAMMAR.get(p).action.reduce(values, count);
+                count++;
+            } else if (symbol < NON_TERMINAL) {
+                TokenType type = tokens.peekType();
+                if (type.ordinal() != symbol) {
+                    throw error(peek(), "Expect " + spelling(TOKEN_TYPES[symbol]));
+                }
+                if (count == values.length) values = Arrays.copyOf(values, count * 2);
+                // Only tokens that end up in the tree are materialized, and
+                // equal ones are shared.
+                advance();
+                values[count++] = keep(type) ? tokens.shared() : null;
+            } else {
+                int[] row = TABLE[symbol - NON_TERMINAL];
+                int p = row[tokens.peekType().ordinal()];
+                if (p < 0) throw error(peek(), "Expect " + expected(row));
+                int[] right = RIGHT[p];
+                if (top + right.length + 1 > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + right.length + 1));
+                }
+                stack[top++] = -(p + 1);
+                for (int i = right.length - 1; i >= 0; i--) {
+                    stack[top++] = right[i];
+                }
+            }
+        }
+        return node(values[0]);
     }
 
-    private boolean isAtEnd() {
-        return peek().type == EOF;
+    private static boolean keep(TokenType type) {
+        switch (type) {
+            case IDENTIFIER:
+            case NUMBER:
+            case INT:
+            case PRINT:
+            case MINUS:
+            case STAR:
+            case CARET:
+                return true;
+            default:
+                return false;
+        }
     }
 
-    private Token peek() {
-        return tokens.get(current);
+    private static String expected(int[] row) {
+        StringJoiner expected = new StringJoiner(" or ");
+        for (int t = 0; t < row.length; t++) {
+            if (row[t] >= 0) expected.add(spelling(TOKEN_TYPES[t]));
+        }
+        return expected.toString();
     }
 
-    private Token previous() {
-        return tokens.get(current - 1);
+    private static String spelling(TokenType type) {
+        switch (type) {
+            case LEFT_PAREN: return "'('";
+            case RIGHT_PAREN: return "')'";
+            case MINUS: return "'-'";
+            case SEMICOLON: return "';'";
+            case STAR: return "'*'";
+            case CARET: return "'^'";
+            case EQUAL: return "'='";
+            case IDENTIFIER: return "identifier";
+            case NUMBER: return "number";
+            case EOF: return "end of input";
+            default: return "'" + type.name().toLowerCase() + "'";
+        }
     }
 
-
-    boolean program() {
-        //Program	-> 	begin Statements end EOF
-        if (check(BEGIN)) {
-            advance();
-            if (!statements()) {
-                throw error(peek(), "Error");
-
-            }
-            if (!check(END)) {
-                throw error(peek(), "Error");
-            }
-            advance();
-            return true;
+    private ParseError error(Token token, String message) {
+        if (diagnostics != null) {
+            diagnostics.error(token.line, token.column, message);
         } else {
-            throw error(peek(), "Error");
+            Tila.error(token, message);
         }
+        return PARSE_ERROR;
     }
 
-    boolean statements() {
-        return false;
+    private void advance() {
+        tokens.advance();
     }
 
-
+    private Token peek() {
+        return tokens.peek();
+    }
 }
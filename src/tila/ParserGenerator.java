@@ -0,0 +1,420 @@
+package tila;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Writes a recursive-descent parser specialized to an LL(1) grammar: one
+// method per nonterminal, and where a nonterminal has alternatives, a switch
+// on the lookahead's ordinal built from the FIRST+ sets. Rules with a
+// template build nodes; rules without one only recognize.
+//   java -cp out/ tila.ParserGenerator src/tila
+public class ParserGenerator {
+    private static final Pattern REFERENCE = Pattern.compile("\\$(\\d+)");
+
+    public static class Rule {
+        final Enum<?> left;
+        final List<? extends Enum<?>> right;
+        final String template;
+
+        public Rule(Enum<?> left, List<? extends Enum<?>> right, String template) {
+            this.left = left;
+            this.right = right;
+            this.template = template;
+        }
+    }
+
+    // What the generated class looks like from the outside.
+    public static class Target {
+        final String packageName;
+        final String className;
+        final String source;
+        // Type of built nodes, or null for a recognizer.
+        final String nodeType;
+        // Read tokens through a TokenCursor rather than a List<Token>.
+        final boolean cursor;
+        // Statement reporting `message` at `token`, or null.
+        final String report;
+
+        public Target(String packageName, String className, String source, String nodeType, boolean cursor, String report) {
+            this.packageName = packageName;
+            this.className = className;
+            this.source = source;
+            this.nodeType = nodeType;
+            this.cursor = cursor;
+            this.report = report;
+        }
+    }
+
+    private final Target target;
+    private final List<Rule> rules;
+    private final Enum<?> epsilon;
+    private final Enum<?> eof;
+    private final GrammarAnalysis analysis;
+    private final Map<Enum<?>, String> types = new HashMap<>();
+    private PrintWriter writer;
+
+    private ParserGenerator(Target target, List<Rule> rules, Enum<?> start, Enum<?> epsilon, Enum<?> eof) {
+        this.target = target;
+        this.rules = rules;
+        this.epsilon = epsilon;
+        this.eof = eof;
+        List<Enum<?>> lefts = new ArrayList<>();
+        List<List<? extends Enum<?>>> rights = new ArrayList<>();
+        for (Rule rule : rules) {
+            lefts.add(rule.left);
+            rights.add(rule.right);
+        }
+        this.analysis = new GrammarAnalysis(lefts, rights, start, epsilon, eof);
+        List<String> conflicts = analysis.conflicts();
+        if (!conflicts.isEmpty()) throw new IllegalStateException("Grammar is not LL(1): " + String.join("; ", conflicts));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: generate_parser <output directory>");
+            System.exit(64);
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (Grammar grammar : Parser.GRAMMAR) {
+            List<Enum<?>> right = new ArrayList<>();
+            for (ITokenType symbol : grammar.right) right.add((Enum<?>) symbol);
+            rules.add(new Rule((Enum<?>) grammar.left, right, grammar.template));
+        }
+        Target target = new Target("tila", "GeneratedParser", "Parser.GRAMMAR", "Expression", true, "Tila.error(token, message);");
+        generate(args[0], target, rules, ExpressionEnum.Program, TokenType.EPSILON, TokenType.EOF);
+    }
+
+    public static void generate(String outputDir, Target target, List<Rule> rules,
+                                Enum<?> start, Enum<?> epsilon, Enum<?> eof) throws IOException {
+        ParserGenerator generator = new ParserGenerator(target, rules, start, epsilon, eof);
+        String path = outputDir + "/" + target.className + ".java";
+        try (PrintWriter writer = new PrintWriter(path, "UTF-8")) {
+            generator.writer = writer;
+            generator.write(start);
+        }
+    }
+
+    private void write(Enum<?> start) {
+        String className = target.className;
+        writer.println("package " + target.packageName + ";");
+        writer.println();
+        if (target.nodeType != null) writer.println("import java.util.ArrayList;");
+        writer.println("import java.util.List;");
+        writer.println();
+        writer.println("// Generated by ParserGenerator from " + target.source + ". Do not edit.");
+        writer.println("final class " + className + " {");
+        writer.println("    private static class ParseError extends RuntimeException {");
+        writer.println("        ParseError() {");
+        writer.println("            super(null, null, false, false);");
+        writer.println("        }");
+        writer.println("    }");
+        writer.println();
+        writer.println("    private static final ParseError PARSE_ERROR = new ParseError();");
+        writer.println();
+        if (target.cursor) {
+            writer.println("    private final TokenCursor tokens;");
+            writer.println();
+            writer.println("    " + className + "(List<Token> tokens) {");
+            writer.println("        this(new TokenCursor.ListCursor(tokens));");
+            writer.println("    }");
+            writer.println();
+            writer.println("    " + className + "(TokenCursor tokens) {");
+            writer.println("        this.tokens = tokens;");
+            writer.println("    }");
+        } else {
+            writer.println("    private final List<Token> tokens;");
+            writer.println("    private int current = 0;");
+            writer.println();
+            writer.println("    " + className + "(List<Token> tokens) {");
+            writer.println("        this.tokens = tokens;");
+            writer.println("    }");
+        }
+        writer.println();
+        if (target.nodeType != null) {
+            writer.println("    " + type(start) + " parse() {");
+            writer.println("        try {");
+            writer.println("            return " + method(start) + "();");
+            writer.println("        } catch (ParseError error) {");
+            writer.println("            return null;");
+            writer.println("        }");
+        } else {
+            writer.println("    boolean parse() {");
+            writer.println("        try {");
+            writer.println("            " + method(start) + "();");
+            writer.println("            return true;");
+            writer.println("        } catch (ParseError error) {");
+            writer.println("            return false;");
+            writer.println("        }");
+        }
+        writer.println("    }");
+
+        for (Enum<?> nonTerminal : start.getDeclaringClass().getEnumConstants()) {
+            List<Integer> alternatives = new ArrayList<>();
+            for (int p = 0; p < rules.size(); p++) {
+                if (rules.get(p).left == nonTerminal) alternatives.add(p);
+            }
+            if (!alternatives.isEmpty()) nonTerminal(nonTerminal, alternatives);
+        }
+        helpers();
+        writer.println("}");
+    }
+
+    private void nonTerminal(Enum<?> nonTerminal, List<Integer> alternatives) {
+        writer.println();
+        writer.println("    private " + type(nonTerminal) + " " + method(nonTerminal) + "() {");
+        if (alternatives.size() == 1) {
+            // Nothing to predict; a wrong token is caught by the first match.
+            production(alternatives.get(0), false, "        ");
+        } else if (isList(nonTerminal, alternatives)) {
+            list(nonTerminal, alternatives);
+        } else {
+            long expected = 0;
+            writer.println("        switch (lookahead()) {");
+            for (int p : alternatives) {
+                expected |= predict(p, "            ");
+                writer.println("            {");
+                production(p, true, "                ");
+                if (target.nodeType == null) writer.println("                return;");
+                writer.println("            }");
+            }
+            writer.println("            default:");
+            writer.println("                throw error(\"Expect " + names(expected) + "\");");
+            writer.println("        }");
+        }
+        writer.println("    }");
+    }
+
+    // N -> a N | ... | EPSILON, where every alternative but the empty one ends
+    // in N and names it nowhere else. Recursing once per element would tie the
+    // stack depth to the list length, so these become loops. A node-building
+    // list may have only one recursive alternative, so that the values saved
+    // per iteration line up.
+    private boolean isList(Enum<?> nonTerminal, List<Integer> alternatives) {
+        int empty = 0;
+        int recursive = 0;
+        for (int p : alternatives) {
+            List<? extends Enum<?>> right = rules.get(p).right;
+            if (right.stream().allMatch(symbol -> symbol == epsilon)) {
+                empty++;
+            } else if (right.get(right.size() - 1) == nonTerminal && right.indexOf(nonTerminal) == right.size() - 1) {
+                recursive++;
+            } else {
+                return false;
+            }
+        }
+        return empty == 1 && (target.nodeType == null || recursive == 1);
+    }
+
+    // Matches elements until the empty alternative is predicted, saving the
+    // values the recursive template uses, then applies the templates from the
+    // innermost element out, as the recursive parser would have.
+    private void list(Enum<?> nonTerminal, List<Integer> alternatives) {
+        int recursive = -1;
+        int empty = -1;
+        for (int p : alternatives) {
+            if (rules.get(p).right.contains(nonTerminal)) recursive = p; else empty = p;
+        }
+        Rule rule = rules.get(recursive);
+        int last = rule.right.size() - 1;
+        boolean[] used = used(rule);
+        if (target.nodeType != null) {
+            for (int i = 0; i < last; i++) {
+                if (used[i]) writer.println("        List<" + type(rule.right.get(i)) + "> v" + i + "s = null;");
+            }
+            writer.println("        elements:");
+        }
+        long expected = 0;
+        writer.println("        while (true) {");
+        writer.println("            switch (lookahead()) {");
+        for (int p : alternatives) {
+            expected |= predict(p, "                ");
+            if (p == empty) {
+                writer.println("                    " + (target.nodeType == null ? "return;" : "break elements;"));
+                continue;
+            }
+            writer.println("                {");
+            symbols(p, true, "                    ", rules.get(p).right.size() - 1);
+            int saved = firstUsed(used, last);
+            if (saved >= 0) {
+                // Most lists are empty, so their storage is allocated late.
+                writer.println("                    if (v" + saved + "s == null) {");
+                for (int i = 0; i < last; i++) {
+                    if (used[i]) writer.println("                        v" + i + "s = new ArrayList<>();");
+                }
+                writer.println("                    }");
+            }
+            for (int i = 0; i < last; i++) {
+                if (used[i]) writer.println("                    v" + i + "s.add(v" + i + ");");
+            }
+            writer.println("                    continue;");
+            writer.println("                }");
+        }
+        writer.println("                default:");
+        writer.println("                    throw error(\"Expect " + names(expected) + "\");");
+        writer.println("            }");
+        writer.println("        }");
+        if (target.nodeType == null) return;
+
+        String type = type(nonTerminal);
+        writer.println("        // " + describe(rules.get(empty)));
+        writer.println("        " + type + " result = " + REFERENCE.matcher(rules.get(empty).template).replaceAll("v$1") + ";");
+        int saved = firstUsed(used, last);
+        if (saved >= 0) {
+            writer.println("        for (int i = v" + saved + "s == null ? -1 : v" + saved + "s.size() - 1; i >= 0; i--) {");
+            for (int i = 0; i < last; i++) {
+                if (used[i]) writer.println("            " + type(rule.right.get(i)) + " v" + i + " = v" + i + "s.get(i);");
+            }
+            String template = rule.template.replace("$" + last, "result");
+            writer.println("            result = " + REFERENCE.matcher(template).replaceAll("v$1") + ";");
+            writer.println("        }");
+        }
+        writer.println("        return result;");
+    }
+
+    private static int firstUsed(boolean[] used, int end) {
+        for (int i = 0; i < end; i++) {
+            if (used[i]) return i;
+        }
+        return -1;
+    }
+
+    // Writes the case labels for an alternative and returns its lookahead set.
+    private long predict(int p, String indent) {
+        long predict = analysis.firstPlus(p) & ~(1L << epsilon.ordinal());
+        for (Enum<?> token : analysis.terminals(predict)) {
+            writer.println(indent + "case " + token.ordinal() + ": // " + token.name());
+        }
+        return predict;
+    }
+
+    // The body of one alternative. When the switch already saw its first
+    // token there is no need to check it again.
+    private void production(int p, boolean predicted, String indent) {
+        Rule rule = rules.get(p);
+        symbols(p, predicted, indent, rule.right.size());
+        if (rule.template != null) {
+            writer.println(indent + "return " + REFERENCE.matcher(rule.template).replaceAll("v$1") + ";");
+        }
+    }
+
+    private void symbols(int p, boolean predicted, String indent, int end) {
+        Rule rule = rules.get(p);
+        writer.println(indent + "// " + describe(rule));
+        boolean[] used = used(rule);
+        List<? extends Enum<?>> right = rule.right;
+        for (int i = 0; i < end; i++) {
+            Enum<?> symbol = right.get(i);
+            if (symbol == epsilon) continue;
+            String value = used[i] ? type(symbol) + " v" + i + " = " : "";
+            if (!isTerminal(symbol)) {
+                writer.println(indent + value + method(symbol) + "();");
+            } else if (i == 0 && predicted) {
+                writer.println(indent + (used[i] ? value + "take();" : "advance();"));
+            } else {
+                String call = used[i] ? "take" : "match";
+                writer.println(indent + value + call + "(" + symbol.ordinal() + ", \"Expect " + symbol.name() + "\");");
+            }
+        }
+    }
+
+    private void helpers() {
+        String peek = target.cursor ? "tokens.peek()" : "tokens.get(current)";
+        writer.println();
+        writer.println("    private int lookahead() {");
+        writer.println("        return " + (target.cursor ? "tokens.peekType()" : "tokens.get(current).type") + ".ordinal();");
+        writer.println("    }");
+        writer.println();
+        writer.println("    private void advance() {");
+        if (target.cursor) {
+            writer.println("        tokens.advance();");
+        } else {
+            writer.println("        if (lookahead() != " + eof.ordinal() + ") current++;");
+        }
+        writer.println("    }");
+        if (target.nodeType != null) {
+            writer.println();
+            writer.println("    private Token take() {");
+            writer.println("        Token token = " + peek + ";");
+            writer.println("        advance();");
+            writer.println("        return token;");
+            writer.println("    }");
+            writer.println();
+            writer.println("    private Token take(int type, String message) {");
+            writer.println("        if (lookahead() != type) throw error(message);");
+            writer.println("        return take();");
+            writer.println("    }");
+        }
+        writer.println();
+        writer.println("    private void match(int type, String message) {");
+        writer.println("        if (lookahead() != type) throw error(message);");
+        writer.println("        advance();");
+        writer.println("    }");
+        writer.println();
+        writer.println("    private ParseError error(String message) {");
+        if (target.report != null) {
+            writer.println("        Token token = " + peek + ";");
+            writer.println("        " + target.report);
+        }
+        writer.println("        return PARSE_ERROR;");
+        writer.println("    }");
+    }
+
+    private boolean[] used(Rule rule) {
+        boolean[] used = new boolean[rule.right.size()];
+        if (rule.template == null) return used;
+        Matcher matcher = REFERENCE.matcher(rule.template);
+        while (matcher.find()) used[Integer.parseInt(matcher.group(1))] = true;
+        return used;
+    }
+
+    // A nonterminal whose every rule just passes one of its symbols through
+    // has that symbol's type, so Type -> INT yields a Token.
+    private String type(Enum<?> symbol) {
+        if (target.nodeType == null) return "void";
+        if (isTerminal(symbol)) return "Token";
+        String type = types.get(symbol);
+        if (type != null) return type;
+        types.put(symbol, target.nodeType);
+        for (Rule rule : rules) {
+            if (rule.left != symbol) continue;
+            Matcher matcher = REFERENCE.matcher(rule.template);
+            String ruleType = matcher.matches() ? type(rule.right.get(Integer.parseInt(matcher.group(1)))) : target.nodeType;
+            if (type == null) {
+                type = ruleType;
+            } else if (!type.equals(ruleType)) {
+                type = "Object";
+            }
+        }
+        if (type == null) type = target.nodeType;
+        types.put(symbol, type);
+        return type;
+    }
+
+    private boolean isTerminal(Enum<?> symbol) {
+        return symbol.getDeclaringClass() == epsilon.getDeclaringClass();
+    }
+
+    private static String method(Enum<?> nonTerminal) {
+        String name = nonTerminal.name();
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private String names(long tokens) {
+        StringJoiner names = new StringJoiner(" or ");
+        for (Enum<?> token : analysis.terminals(tokens)) names.add(token.name());
+        return names.toString();
+    }
+
+    private static String describe(Rule rule) {
+        StringJoiner right = new StringJoiner(" ");
+        for (Enum<?> symbol : rule.right) right.add(symbol.name());
+        return rule.left.name() + " -> " + right;
+    }
+}
@@ -1,92 +1,206 @@
 package tila;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static tila.TokenType.*;
 
 public class ParserRec {
 
+    // Thrown only to unwind to the enclosing statement once the error has been
+    // reported, so one stackless instance does.
     private static class ParseError extends RuntimeException {
+        ParseError() {
+            super(null, null, false, false);
+        }
     }
 
-    private final List<Token> tokens;
-    private int current = 0;
+    private static final ParseError PARSE_ERROR = new ParseError();
+
+    private final TokenCursor tokens;
+    private final Diagnostics diagnostics;
+    // Shares equal subexpressions when given; shared nodes sit in many
+    // statements at once, so they carry no span.
+    private final NodeFactory nodes;
+    // Tokens consumed so far, and where the statement being parsed began;
+    // spans are recorded relative to the latter.
+    private int position = 0;
+    private int statement = 0;
+    // Statement starts of the Blocks being parsed, innermost on top.
+    private int[] starts = new int[64];
+    private int startCount = 0;
 
     ParserRec(List<Token> tokens) {
+        this(new TokenCursor.ListCursor(tokens));
+    }
+
+    ParserRec(TokenCursor tokens) {
+        this(tokens, null);
+    }
+
+    // Syntax errors go to diagnostics when one is given, otherwise straight
+    // to Tila.error.
+    ParserRec(TokenCursor tokens, Diagnostics diagnostics) {
+        this(tokens, diagnostics, null);
+    }
+
+    ParserRec(TokenCursor tokens, Diagnostics diagnostics, NodeFactory nodes) {
         this.tokens = tokens;
+        this.diagnostics = diagnostics;
+        this.nodes = nodes;
     }
 
 
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance();
-                return true;
-            }
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            advance();
+            return true;
         }
         return false;
     }
 
+    private boolean match(TokenType first, TokenType second) {
+        return match(first) || match(second);
+    }
+
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return tokens.peekType() == type;
     }
 
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
+    private void advance() {
+        tokens.advance();
+        position++;
+    }
+
+    int position() {
+        return position;
+    }
+
+    private <T extends Expression> T span(T node, int first) {
+        node.first = first - statement;
+        node.end = position - statement;
+        return node;
     }
 
     private boolean isAtEnd() {
-        return peek().type == EOF;
+        return tokens.peekType() == EOF;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.peek();
     }
 
+    // The token just consumed, for the tree.
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.shared();
     }
 
 
-    private Token consume(TokenType type, String message) {
-        if (check(type)) return advance();
+    private void consume(TokenType type, String message) {
+        if (check(type)) {
+            advance();
+            return;
+        }
         throw error(peek(), message);
     }
 
     private ParseError error(Token token, String message) {
-        Tila.error(token, message);
-        return new ParseError();
+        if (diagnostics != null) {
+            diagnostics.error(token.line, token.column, message);
+        } else {
+            Tila.error(token, message);
+        }
+        return PARSE_ERROR;
+    }
+
+    // Panic mode: skip to the next ';' (consumed) or to an 'end', 'while' or
+    // EOF the statement loop can resume at. A skipped 'begin' opens a loop
+    // body, which is parsed for its own errors so that its 'end' does not
+    // close the enclosing block. Every token is skipped or parsed once, so a
+    // badly broken file still takes linear time.
+    private void synchronize() {
+        while (true) {
+            switch (tokens.peekType()) {
+                case SEMICOLON:
+                    advance();
+                    return;
+                case END:
+                case WHILE:
+                case EOF:
+                    return;
+                case BEGIN:
+                    advance();
+                    statements();
+                    match(END);
+                    break;
+                default:
+                    advance();
+            }
+        }
     }
 
 
+    // A missing 'begin' or 'end' is reported without giving up, so the
+    // statements in between still get checked.
     private Expression program() {
-        if (match(BEGIN)) {
-            Expression statements = statements();
-            consume(END, "Expect 'end' after expression");
-            return new Expression.Program(statements);
-        }
-        throw error(peek(), "Expect expression");
+        if (!match(BEGIN)) error(peek(), "Expect expression");
+        Expression statements = statements();
+        close();
+        return span(new Expression.Program(statements), 0);
     }
 
-    private Expression statements() {
-        if (peek().type == END) {
-            return new Expression.Epsilon();
+    // The top-level statements of one region of a program, for
+    // ParallelParser and IncrementalParser. The cursor starts at a statement
+    // and sees EOF where the region ends, or runs on to the program's closing
+    // 'end'. Spans are relative to the start of the region.
+    Expression.Block region() {
+        return statements();
+    }
+
+    // The program's closing 'end', which must be the last token, as the
+    // table-driven parsers require.
+    void close() {
+        if (!match(END)) {
+            error(peek(), "Expect 'end' after expression");
+        } else if (!isAtEnd()) {
+            error(peek(), "Expect end of input");
         }
-        Expression statement = statement();
-        if (match(SEMICOLON)) {
-            Expression statements = statements();
-            return new Expression.Statements(statement, statements);
+    }
+
+    // Statements up to the closing 'end', collected in a loop into one Block.
+    // A statement with a syntax error is left out and parsing resumes after
+    // it, so the Block holds the statements that did parse.
+    private Expression.Block statements() {
+        int first = position;
+        int outer = statement;
+        int base = startCount;
+        List<Expression> statements = new ArrayList<>();
+        while (tokens.peekType() != END && !isAtEnd()) {
+            statement = position;
+            try {
+                Expression parsed = statement();
+                if (!match(SEMICOLON)) throw error(peek(), "Expect 'end' or ';'");
+                statements.add(parsed);
+                if (startCount == starts.length) starts = Arrays.copyOf(starts, startCount * 2);
+                starts[startCount++] = statement - first;
+            } catch (ParseError error) {
+                synchronize();
+            }
         }
-        throw error(peek(), "Expect 'end' or ';'");
+        statement = outer;
+        int[] blockStarts = Arrays.copyOfRange(starts, base, startCount);
+        startCount = base;
+        return span(new Expression.Block(statements, blockStarts), first);
     }
 
     private Expression statement() {
+        int first = position;
         if (match(PRINT)) {
             Token operator = previous();
             Expression right = expr();
-            return new Expression.Unary(operator, right);
+            return span(new Expression.Unary(operator, right), first);
         } else if (match(WHILE)) {
             return loop();
         } else if (match(IDENTIFIER)) {
@@ -98,6 +212,7 @@ public class ParserRec {
     }
 
     private Expression decl() {
+        int first = position;
 //        if (match(INT)) {
 //            Token type = previous();
 //            Token identifier = consume(IDENTIFIER, "Expect identifier");
@@ -105,90 +220,80 @@ public class ParserRec {
 //            return new Expression.Decl(type, identifier, decl);
 //        }
 //        return new Expression.Epsilon();
-        Token type = consume(INT, "Expect type");
-        Token identifier = consume(IDENTIFIER, "Expect identifier");
-        return new Expression.Decl(type, identifier);
+        consume(INT, "Expect type");
+        Token type = previous();
+        consume(IDENTIFIER, "Expect identifier");
+        Token identifier = previous();
+        return span(new Expression.Decl(type, identifier), first);
     }
 
     private Expression assignment() {
+        int first = position - 1;
         Token identifier = previous();
         consume(EQUAL, "Expect '='");
         Expression expr = expr();
-        return new Expression.Assignment(identifier, expr);
+        return span(new Expression.Assignment(identifier, expr), first);
     }
 
     private Expression loop() {
+        int first = position - 1;
         Expression condition = expr();
         consume(DO, "Expect 'do'");
         consume(BEGIN, "Expect 'begin'");
         Expression body = statements();
         consume(END, "Expect 'end'");
-        return new Expression.While(condition, body);
+        return span(new Expression.While(condition, body), first);
     }
 
+    // Precedence climbing over - (lowest), * and ^ (highest, right-associative),
+    // building one Binary per operator instead of a chain per grammar level.
     private Expression expr() {
-        return new Expression.Expr(expr1(), expr2());
-    }
-
-    private Expression expr1() {
-        return new Expression.Expr1(expr3(), expr4());
+        return binary(1);
     }
 
-    private Expression expr2() {
-        if (match(MINUS)) {
+    private Expression binary(int minPrecedence) {
+        int first = position;
+        Expression left = primary();
+        for (int precedence = precedence(tokens.peekType()); precedence >= minPrecedence; precedence = precedence(tokens.peekType())) {
+            advance();
             Token operator = previous();
-            Expression middle = expr1();
-            Expression right = expr2();
-            return new Expression.Calculation(operator, middle, right);
+            Expression right = binary(operator.type == CARET ? precedence : precedence + 1);
+            left = nodes != null ? nodes.binary(left, operator, right) : span(new Expression.Binary(left, operator, right), first);
         }
-        return new Expression.Epsilon();
+        return left;
     }
 
-    private Expression expr3() {
-        return new Expression.Expr3(expr5(), expr7());
-    }
-
-    private Expression expr4() {
-        if (match(STAR)) {
-            Token operator = previous();
-            Expression middle = expr3();
-            Expression right = expr4();
-            return new Expression.Calculation(operator, middle, right);
+    private static int precedence(TokenType type) {
+        switch (type) {
+            case MINUS:
+                return 1;
+            case STAR:
+                return 2;
+            case CARET:
+                return 3;
+            default:
+                return 0;
         }
-        return new Expression.Epsilon();
     }
 
-    private Expression expr5() {
+    private Expression primary() {
+        int first = position;
         if (match(LEFT_PAREN)) {
             Expression expr = expr();
             consume(RIGHT_PAREN, "Expect ')' after expression");
-            return new Expression.Grouping(expr);
+            return nodes != null ? nodes.grouping(expr) : span(new Expression.Grouping(expr), first);
         }
-        return expr6();
-    }
-
-    private Expression expr6() {
         if (match(NUMBER, IDENTIFIER)) {
-            return new Expression.Literal(previous());
+            Token value = previous();
+            return nodes != null ? nodes.literal(value) : span(new Expression.Literal(value), first);
         }
         throw error(peek(), "Expect identifier or number");
     }
 
-    private Expression expr7() {
-        if (match(CARET)) {
-            Token operator = previous();
-            Expression right = expr3();
-            return new Expression.Unary(operator, right);
-        }
-        return new Expression.Epsilon();
-    }
-
 
+    // Never null: after a syntax error the tree is partial, and the errors
+    // are in the diagnostics or have been reported through Tila.error.
     Expression parse() {
-        try {
-            return program();
-        } catch (ParseError error) {
-            return null;
-        }
+        return program();
     }
 }
@@ -0,0 +1,144 @@
+package tila;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static tila.TokenType.EPSILON;
+
+// The LL(1) table and right sides Parser drives, precomputed at build time
+// into a resource next to this class so a cold start only reads them:
+//   java -cp out/ tila.ParserTables out/
+// The resource carries a fingerprint of the grammar; when it is missing or
+// stale the tables are computed from GrammarAnalysis instead.
+public class ParserTables {
+    static final String RESOURCE = "parser.tables";
+    private static final int MAGIC = 0x54494c41;
+    private static final int VERSION = 1;
+
+    // Stack symbols: terminals by TokenType ordinal, then nonterminals by
+    // ExpressionEnum ordinal.
+    static final int NON_TERMINAL = TokenType.values().length;
+
+    // table[nonterminal][token] is the production to expand, or -1.
+    final int[][] table;
+    // Right sides as stack symbols, without EPSILON.
+    final int[][] right;
+
+    private ParserTables(int[][] table, int[][] right) {
+        this.table = table;
+        this.right = right;
+    }
+
+    static ParserTables load(List<Grammar> grammar, ExpressionEnum start) {
+        try (InputStream input = ParserTables.class.getResourceAsStream(RESOURCE)) {
+            if (input != null) {
+                ParserTables tables = read(new DataInputStream(new BufferedInputStream(input)), fingerprint(grammar));
+                if (tables != null) return tables;
+            }
+        } catch (IOException e) {
+            // Fall through and compute them.
+        }
+        return compute(grammar, start);
+    }
+
+    static ParserTables compute(List<Grammar> grammar, ExpressionEnum start) {
+        GrammarAnalysis analysis = new GrammarAnalysis(grammar, start);
+        List<String> conflicts = analysis.conflicts();
+        if (!conflicts.isEmpty()) throw new IllegalStateException("Grammar is not LL(1): " + String.join("; ", conflicts));
+
+        int[][] table = new int[ExpressionEnum.values().length][NON_TERMINAL];
+        for (int[] row : table) {
+            Arrays.fill(row, -1);
+        }
+        int[][] right = new int[grammar.size()][];
+        for (int p = 0; p < grammar.size(); p++) {
+            Grammar production = grammar.get(p);
+            right[p] = production.right.stream().filter(a -> a != EPSILON).mapToInt(ParserTables::symbol).toArray();
+            int[] row = table[((ExpressionEnum) production.left).ordinal()];
+            for (TokenType token : GrammarAnalysis.tokens(analysis.firstPlus(p))) {
+                if (token != EPSILON) row[token.ordinal()] = p;
+            }
+        }
+        return new ParserTables(table, right);
+    }
+
+    static int symbol(ITokenType type) {
+        if (type instanceof TokenType) return ((TokenType) type).ordinal();
+        return NON_TERMINAL + ((ExpressionEnum) type).ordinal();
+    }
+
+    // Changes whenever a production or either symbol enum changes. The
+    // tables index symbols by ordinal, so the constants are hashed by name in
+    // ordinal order: reordering or renaming one makes the resource stale.
+    static int fingerprint(List<Grammar> grammar) {
+        int hash = 0;
+        for (TokenType type : TokenType.values()) {
+            hash = 31 * hash + type.name().hashCode();
+        }
+        for (ExpressionEnum nonTerminal : ExpressionEnum.values()) {
+            hash = 31 * hash + nonTerminal.name().hashCode();
+        }
+        for (Grammar production : grammar) {
+            hash = 31 * hash + GrammarAnalysis.describe(production).hashCode();
+        }
+        return hash;
+    }
+
+    void write(OutputStream output, int fingerprint) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(fingerprint);
+        data.writeShort(table.length);
+        data.writeShort(NON_TERMINAL);
+        for (int[] row : table) {
+            for (int p : row) data.writeShort(p);
+        }
+        data.writeShort(right.length);
+        for (int[] symbols : right) {
+            data.writeByte(symbols.length);
+            for (int symbol : symbols) data.writeShort(symbol);
+        }
+        data.flush();
+    }
+
+    // Null if the resource was written for another grammar or format.
+    private static ParserTables read(DataInputStream data, int fingerprint) throws IOException {
+        if (data.readInt() != MAGIC || data.readInt() != VERSION || data.readInt() != fingerprint) return null;
+        int rows = data.readShort();
+        int columns = data.readShort();
+        if (rows != ExpressionEnum.values().length || columns != NON_TERMINAL) return null;
+        int[][] table = new int[rows][columns];
+        for (int[] row : table) {
+            for (int t = 0; t < columns; t++) row[t] = data.readShort();
+        }
+        int[][] right = new int[data.readShort()][];
+        for (int p = 0; p < right.length; p++) {
+            right[p] = new int[data.readByte()];
+            for (int i = 0; i < right[p].length; i++) right[p][i] = data.readShort();
+        }
+        return new ParserTables(table, right);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: ParserTables <classes directory>");
+            System.exit(64);
+        }
+        Path path = Paths.get(args[0], "tila", RESOURCE);
+        Files.createDirectories(path.getParent());
+        try (OutputStream output = Files.newOutputStream(path)) {
+            compute(Parser.GRAMMAR, ExpressionEnum.Program).write(output, fingerprint(Parser.GRAMMAR));
+        }
+    }
+}
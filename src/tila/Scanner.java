@@ -1,38 +1,55 @@
 package tila;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static tila.TokenType.*;
 
 
 class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    private int start = 0;
-    private int current = 0;
+    private final CharSequence source;
+    private final int end;
+    private final TokenBuffer tokens;
+    private final Diagnostics diagnostics;
+    private int start;
+    private int current;
     private int currentInLine = 1;
     private int line = 1;
     private int column = 1;
-    private static final Map<String, TokenType> keywords;
 
-    static {
-        keywords = new HashMap<>();
-        keywords.put("while", WHILE);
-        keywords.put("do", DO);
-        keywords.put("begin", BEGIN);
-        keywords.put("end", END);
-        keywords.put("print", PRINT);
-        keywords.put("int", INT);
+    Scanner(CharSequence source) {
+        this(source, 0, source.length(), null);
     }
 
-    Scanner(String source) {
+    // Scans only source[from, to), counting lines from 1. Errors go to
+    // diagnostics when one is given, otherwise straight to Tila.error.
+    Scanner(CharSequence source, int from, int to, Diagnostics diagnostics) {
+        // Roughly one token per four characters of typical source.
+        this(source, from, to, 1, 1, new TokenBuffer(source, (to - from) / 4), diagnostics);
+    }
+
+    // Resumes scanning at from, which is at the given line and column, and
+    // interns names into an existing symbol table. Meant for short rescans.
+    Scanner(CharSequence source, int from, int to, int line, int column, SymbolTable symbols, Diagnostics diagnostics) {
+        this(source, from, to, line, column, new TokenBuffer(source, 0, symbols), diagnostics);
+    }
+
+    private Scanner(CharSequence source, int from, int to, int line, int column, TokenBuffer tokens, Diagnostics diagnostics) {
         this.source = source;
+        this.end = to;
+        this.diagnostics = diagnostics;
+        this.start = from;
+        this.current = from;
+        this.line = line;
+        this.currentInLine = column;
+        this.column = column;
+        this.tokens = tokens;
     }
 
     List<Token> scanTokens() {
+        return scanBuffer().toList();
+    }
+
+    TokenBuffer scanBuffer() {
         while (!isAtEnd()) {
             // We are at the beginning of the next lexeme.
             start = current;
@@ -40,12 +57,35 @@ class Scanner {
             scanToken();
         }
         column = currentInLine;
-        tokens.add(new Token(EOF, "", null, line, column));
+        tokens.add(EOF, current, 0, line, column, 0);
         return tokens;
     }
 
+    TokenBuffer tokens() {
+        return tokens;
+    }
+
+    // Scans until one more token has been added; false once the input is used up.
+    boolean scanNext() {
+        int size = tokens.size();
+        while (!isAtEnd() && tokens.size() == size) {
+            start = current;
+            column = currentInLine;
+            scanToken();
+        }
+        return tokens.size() > size;
+    }
+
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= end;
+    }
+
+    private void error(String message) {
+        if (diagnostics != null) {
+            diagnostics.error(line, column, message, start);
+        } else {
+            Tila.error(line, column, message);
+        }
     }
 
     private void scanToken() {
@@ -95,7 +135,7 @@ class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    Tila.error(line, column, String.format("Unexpected character \"%s\"", c));
+                    error(String.format("Unexpected character \"%s\"", c));
                 }
                 break;
         }
@@ -108,12 +148,11 @@ class Scanner {
     }
 
     private void addToken(TokenType type) {
-        addToken(type, null);
+        addToken(type, 0);
     }
 
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line, column));
+    private void addToken(TokenType type, long literal) {
+        tokens.add(type, start, current - start, line, column, literal);
     }
 
     private char peek() {
@@ -136,46 +175,55 @@ class Scanner {
 //        addToken(STRING, value);
 //    }
 
-    private boolean isDigit(char c) {
+    static boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
 
     private void number() {
-        while (isDigit(peek())) advance();
+        long value = source.charAt(start) - '0';
+        boolean overflow = false;
+        while (isDigit(peek())) {
+            int digit = advance() - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                overflow = true;
+            } else {
+                value = value * 10 + digit;
+            }
+        }
         // Look for a fractional part.
 //        if (peek() == '.' && isDigit(peekNext())) {
 //            // Consume the "."
 //            advance();
 //            while (isDigit(peek())) advance();
 //        }
-        String numberString = source.substring(start, current);
-        if (numberString.startsWith("0") && numberString.length() > 1) {
-            Tila.error(line, column, String.format("Unexpected number \"%s\"", numberString));
+        if (source.charAt(start) == '0' && current - start > 1) {
+            error(String.format("Unexpected number \"%s\"", source.subSequence(start, current)));
+        } else if (overflow) {
+            error(String.format("Number too large \"%s\"", source.subSequence(start, current)));
         } else {
-            addToken(NUMBER, Double.parseDouble(numberString));
+            addToken(NUMBER, value);
         }
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
+        if (current + 1 >= end) return '\0';
         return source.charAt(current + 1);
     }
 
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type);
+        SymbolTable symbols = tokens.symbols();
+        int symbol = symbols.intern(source, start, current);
+        addToken(symbols.type(symbol), symbol);
     }
 
-    private boolean isAlpha(char c) {
+    static boolean isAlpha(char c) {
         return (c >= 'a' && c <= 'z') ||
                 (c >= 'A' && c <= 'Z') ||
                 c == '_';
     }
 
-    private boolean isAlphaNumeric(char c) {
+    static boolean isAlphaNumeric(char c) {
         return isAlpha(c) || isDigit(c);
     }
 }
\ No newline at end of file
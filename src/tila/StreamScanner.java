@@ -0,0 +1,228 @@
+package tila;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import static tila.TokenType.*;
+
+// Same lexical rules as Scanner, but pulls characters through a fixed-size
+// buffer so the whole source never has to be resident at once.
+class StreamScanner {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private final StringBuilder lexeme = new StringBuilder();
+    private final SymbolTable symbols = new SymbolTable();
+    private int currentInLine = 1;
+    private int line = 1;
+    private int column = 1;
+    private final Diagnostics diagnostics;
+
+    StreamScanner(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    StreamScanner(Reader reader, int bufferSize) {
+        this(reader, bufferSize, null);
+    }
+
+    // Lexical errors go to diagnostics when one is given, otherwise straight
+    // to Tila.error.
+    StreamScanner(Reader reader, int bufferSize, Diagnostics diagnostics) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+        this.diagnostics = diagnostics;
+    }
+
+    StreamScanner(ReadableByteChannel channel) {
+        this(channel, null);
+    }
+
+    StreamScanner(ReadableByteChannel channel, Diagnostics diagnostics) {
+        this(Channels.newReader(channel, Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1), DEFAULT_BUFFER_SIZE, diagnostics);
+    }
+
+    List<Token> scanTokens() throws IOException {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != EOF);
+        return tokens;
+    }
+
+    Token nextToken() throws IOException {
+        while (!isAtEnd()) {
+            // We are at the beginning of the next lexeme.
+            lexeme.setLength(0);
+            column = currentInLine;
+            Token token = scanToken();
+            if (token != null) return token;
+        }
+        column = currentInLine;
+        return new Token(EOF, "", 0, line, column);
+    }
+
+    // Scans on demand, holding only the current and previous token.
+    TokenCursor cursor() {
+        return new TokenCursor() {
+            private Token previous;
+            private Token current = next();
+
+            @Override
+            public TokenType peekType() {
+                return current.type;
+            }
+
+            @Override
+            public Token peek() {
+                return current;
+            }
+
+            @Override
+            public Token previous() {
+                return previous;
+            }
+
+            @Override
+            public void advance() {
+                if (current.type == EOF) return;
+                previous = current;
+                current = next();
+            }
+
+            private Token next() {
+                try {
+                    return nextToken();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private boolean isAtEnd() throws IOException {
+        return position >= limit && !fill();
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) return false;
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        position = 0;
+        if (read < 0) {
+            eof = true;
+            limit = 0;
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private Token scanToken() throws IOException {
+        char c = advance();
+        switch (c) {
+            case '(':
+                return addToken(LEFT_PAREN);
+            case ')':
+                return addToken(RIGHT_PAREN);
+            case '-':
+                return addToken(MINUS);
+            case '^':
+                return addToken(CARET);
+            case '*':
+                return addToken(STAR);
+            case ';':
+                return addToken(SEMICOLON);
+            case '=':
+                return addToken(EQUAL);
+            case ' ':
+            case '\r':
+            case '\t':
+                return null;
+            case '\n':
+                currentInLine = 1;
+                line++;
+                return null;
+            default:
+                if (Scanner.isDigit(c)) {
+                    return number();
+                } else if (Scanner.isAlpha(c)) {
+                    return identifier();
+                }
+                error(String.format("Unexpected character \"%s\"", c));
+                return null;
+        }
+    }
+
+    private void error(String message) {
+        if (diagnostics != null) {
+            diagnostics.error(line, column, message);
+        } else {
+            Tila.error(line, column, message);
+        }
+    }
+
+    private char advance() {
+        currentInLine++;
+        char c = buffer[position++];
+        lexeme.append(c);
+        return c;
+    }
+
+    private char peek() throws IOException {
+        if (isAtEnd()) return '\0';
+        return buffer[position];
+    }
+
+    private Token addToken(TokenType type) {
+        return addToken(type, 0);
+    }
+
+    private Token addToken(TokenType type, long value) {
+        return new Token(type, lexeme.toString(), value, line, column);
+    }
+
+    private Token number() throws IOException {
+        long value = lexeme.charAt(0) - '0';
+        boolean overflow = false;
+        while (Scanner.isDigit(peek())) {
+            int digit = advance() - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                overflow = true;
+            } else {
+                value = value * 10 + digit;
+            }
+        }
+        if (lexeme.charAt(0) == '0' && lexeme.length() > 1) {
+            error(String.format("Unexpected number \"%s\"", lexeme));
+            return null;
+        } else if (overflow) {
+            error(String.format("Number too large \"%s\"", lexeme));
+            return null;
+        }
+        return addToken(NUMBER, value);
+    }
+
+    private Token identifier() throws IOException {
+        while (Scanner.isAlphaNumeric(peek())) advance();
+        int symbol = symbols.intern(lexeme, 0, lexeme.length());
+        return new Token(symbols.type(symbol), symbols.name(symbol), 0, line, column, symbol);
+    }
+}
@@ -0,0 +1,96 @@
+package tila;
+
+import java.util.Arrays;
+
+import static tila.TokenType.*;
+
+// Interns identifier text straight out of the source and hands out dense int
+// ids. The keywords are interned first, so ids below KEYWORD_COUNT are keywords
+// and recognizing one costs no more than interning any other identifier.
+class SymbolTable {
+    private static final String[] KEYWORDS = {"while", "do", "begin", "end", "print", "int"};
+    private static final TokenType[] KEYWORD_TYPES = {WHILE, DO, BEGIN, END, PRINT, INT};
+    static final int KEYWORD_COUNT = KEYWORDS.length;
+
+    // Open addressing; each slot holds symbol id + 1, zero means empty.
+    private int[] slots = new int[64];
+    private int[] hashes = new int[16];
+    private String[] names = new String[16];
+    private int size = 0;
+
+    SymbolTable() {
+        for (String keyword : KEYWORDS) {
+            intern(keyword, 0, keyword.length());
+        }
+    }
+
+    int intern(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            int symbol = slots[slot] - 1;
+            if (hashes[symbol] == hash && matches(names[symbol], text, start, end)) return symbol;
+            slot = (slot + 1) & mask;
+        }
+        return add(slot, hash, text.subSequence(start, end).toString());
+    }
+
+    private int add(int slot, int hash, String name) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int symbol = size++;
+        names[symbol] = name;
+        hashes[symbol] = hash;
+        slots[slot] = symbol + 1;
+        if (size * 2 > slots.length) rehash();
+        return symbol;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int symbol = 0; symbol < size; symbol++) {
+            int slot = mix(hashes[symbol]) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = symbol + 1;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    // Keywords are interned in KEYWORDS order, so their ids are fixed.
+    static int keyword(TokenType type) {
+        for (int symbol = 0; symbol < KEYWORD_COUNT; symbol++) {
+            if (KEYWORD_TYPES[symbol] == type) return symbol;
+        }
+        return -1;
+    }
+
+    TokenType type(int symbol) {
+        return symbol < KEYWORD_COUNT ? KEYWORD_TYPES[symbol] : IDENTIFIER;
+    }
+
+    String name(int symbol) {
+        return names[symbol];
+    }
+
+    int size() {
+        return size;
+    }
+}
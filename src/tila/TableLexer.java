@@ -0,0 +1,125 @@
+package tila;
+
+import java.util.List;
+
+import static tila.TokenType.*;
+
+// Drop-in alternative to Scanner driven by the DFA tables that LexerGenerator
+// builds from LexerSpec. Each token is the longest match; only NUMBER and
+// identifier/keyword tokens need any work after the match.
+class TableLexer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int CLASS_COUNT = LexerTables.CLASS_COUNT;
+    private static final byte[] CLASSES = LexerTables.CLASSES;
+    private static final int[] TRANSITIONS = LexerTables.TRANSITIONS;
+    private static final int[] ACCEPTS = LexerTables.ACCEPTS;
+
+    private final CharSequence source;
+    private final TokenBuffer tokens;
+    private final Diagnostics diagnostics;
+    private int current = 0;
+    private int currentInLine = 1;
+    private int line = 1;
+
+    TableLexer(CharSequence source) {
+        this(source, null);
+    }
+
+    // As in Scanner, lexical errors go to diagnostics when one is given,
+    // otherwise straight to Tila.error.
+    TableLexer(CharSequence source, Diagnostics diagnostics) {
+        this.source = source;
+        this.tokens = new TokenBuffer(source, source.length() / 4);
+        this.diagnostics = diagnostics;
+    }
+
+    List<Token> scanTokens() {
+        return scanBuffer().toList();
+    }
+
+    TokenBuffer scanBuffer() {
+        int length = source.length();
+        while (current < length) {
+            int start = current;
+            int column = currentInLine;
+            int state = 0;
+            int accept = -1;
+            int end = start;
+            for (int i = start; i < length; i++) {
+                char c = source.charAt(i);
+                if (c >= CLASSES.length) break;
+                state = TRANSITIONS[state * CLASS_COUNT + CLASSES[c]];
+                if (state < 0) break;
+                if (ACCEPTS[state] >= 0) {
+                    accept = ACCEPTS[state];
+                    end = i + 1;
+                }
+            }
+            if (accept < 0) {
+                error(line, column, String.format("Unexpected character \"%s\"", source.charAt(start)), start);
+                current = start + 1;
+                currentInLine++;
+                continue;
+            }
+            current = end;
+            currentInLine += end - start;
+            if (accept == LexerSpec.NEWLINE) {
+                currentInLine = 1;
+                line++;
+            } else if (accept != LexerSpec.SKIP) {
+                addToken(TYPES[accept], start, end, column);
+            }
+        }
+        tokens.add(EOF, current, 0, line, currentInLine, 0);
+        return tokens;
+    }
+
+    private void addToken(TokenType type, int start, int end, int column) {
+        switch (type) {
+            case NUMBER:
+                number(start, end, column);
+                return;
+            case IDENTIFIER:
+                tokens.add(type, start, end - start, line, column, tokens.symbols().intern(source, start, end));
+                return;
+            case PRINT:
+            case WHILE:
+            case DO:
+            case BEGIN:
+            case END:
+            case INT:
+                tokens.add(type, start, end - start, line, column, SymbolTable.keyword(type));
+                return;
+            default:
+                tokens.add(type, start, end - start, line, column, 0);
+        }
+    }
+
+    private void number(int start, int end, int column) {
+        long value = 0;
+        boolean overflow = false;
+        for (int i = start; i < end; i++) {
+            int digit = source.charAt(i) - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                overflow = true;
+            } else {
+                value = value * 10 + digit;
+            }
+        }
+        if (source.charAt(start) == '0' && end - start > 1) {
+            error(line, column, String.format("Unexpected number \"%s\"", source.subSequence(start, end)), start);
+        } else if (overflow) {
+            error(line, column, String.format("Number too large \"%s\"", source.subSequence(start, end)), start);
+        } else {
+            tokens.add(NUMBER, start, end - start, line, column, value);
+        }
+    }
+
+    private void error(int line, int column, String message, int start) {
+        if (diagnostics != null) {
+            diagnostics.error(line, column, message, start);
+        } else {
+            Tila.error(line, column, message);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package tila;
+
+import java.util.Arrays;
+
+// Editable text as a gap buffer: the characters before and after the gap sit
+// at the two ends of one array, so a replace only moves the characters
+// between the gap and the edit. Edits close to each other, as typing makes
+// them, cost about as much as the text they insert.
+class TextBuffer implements CharSequence {
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    TextBuffer(String text) {
+        chars = Arrays.copyOf(text.toCharArray(), Math.max(text.length() * 2, 16));
+        gapStart = text.length();
+        gapEnd = chars.length;
+    }
+
+    void replace(int offset, int removed, String inserted) {
+        moveGap(offset);
+        gapEnd += removed;
+        int length = inserted.length();
+        if (gapEnd - gapStart < length) grow(length);
+        inserted.getChars(0, length, chars, gapStart);
+        gapStart += length;
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int count = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - count, count);
+            gapStart = offset;
+            gapEnd -= count;
+        } else if (offset > gapStart) {
+            int count = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, count);
+            gapStart = offset;
+            gapEnd += count;
+        }
+    }
+
+    private void grow(int needed) {
+        int tail = chars.length - gapEnd;
+        char[] grown = new char[Math.max(chars.length * 2, length() + needed + 16)];
+        System.arraycopy(chars, 0, grown, 0, gapStart);
+        System.arraycopy(chars, gapEnd, grown, grown.length - tail, tail);
+        chars = grown;
+        gapEnd = grown.length - tail;
+    }
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    @Override
+    public String subSequence(int start, int end) {
+        if (end <= gapStart) return new String(chars, start, end - start);
+        int gap = gapEnd - gapStart;
+        if (start >= gapStart) return new String(chars, start + gap, end - start);
+        StringBuilder text = new StringBuilder(end - start);
+        text.append(chars, start, gapStart - start);
+        text.append(chars, gapEnd, end - gapStart);
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length());
+    }
+}
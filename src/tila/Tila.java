@@ -1,34 +1,134 @@
 package tila;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
-import java.util.List;
 
 public class Tila {
     static boolean hadError = false;
     static String inputFile = null;
+    static boolean pipeline = false;
+    static boolean table = false;
+    static boolean parallel = false;
+    static boolean arena = false;
+    static boolean cache = false;
+    static boolean json = false;
+    static boolean share = false;
+    private static final String CACHE_DIRECTORY = ".tila-cache";
+    private static final int PIPELINE_CAPACITY = 4096;
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            if (args[first].equals("--pipeline")) {
+                pipeline = true;
+            } else if (args[first].equals("--table")) {
+                table = true;
+            } else if (args[first].equals("--parallel")) {
+                parallel = true;
+            } else if (args[first].equals("--arena")) {
+                arena = true;
+            } else if (args[first].equals("--cache")) {
+                cache = true;
+            } else if (args[first].equals("--json")) {
+                json = true;
+            } else if (args[first].equals("--share")) {
+                share = true;
+            } else {
+                System.out.println("Error: Illegal input");
+                System.exit(64);
+            }
+        }
+        checkFlags();
+        if (args.length - first > 1) {
             System.out.println("Error: Illegal input");
             System.exit(64);
-        } else if (args.length == 1) {
-            inputFile = args[0];
-            runFile(args[0]);
+        } else if (args.length - first == 1) {
+            inputFile = args[first];
+            runFile(args[first]);
         } else {
             runPrompt();
         }
     }
 
+    // Flags that pick different scanners, parsers or printers cannot be
+    // given together; a mode that would ignore one rejects it instead.
+    private static void checkFlags() {
+        conflict(parallel, "--parallel", pipeline, "--pipeline");
+        conflict(parallel, "--parallel", table, "--table");
+        conflict(arena, "--arena", pipeline, "--pipeline");
+        conflict(arena, "--arena", table, "--table");
+        conflict(arena, "--arena", parallel, "--parallel");
+        conflict(cache, "--cache", pipeline, "--pipeline");
+        conflict(cache, "--cache", table, "--table");
+        conflict(cache, "--cache", parallel, "--parallel");
+        conflict(cache, "--cache", arena, "--arena");
+        conflict(json, "--json", arena, "--arena");
+        conflict(json, "--json", cache, "--cache");
+        conflict(share, "--share", table, "--table");
+        conflict(share, "--share", parallel, "--parallel");
+        conflict(share, "--share", arena, "--arena");
+        conflict(share, "--share", cache, "--cache");
+    }
+
+    private static void conflict(boolean first, String firstName, boolean second, String secondName) {
+        if (first && second) {
+            System.out.println("Error: " + firstName + " cannot be combined with " + secondName);
+            System.exit(64);
+        }
+    }
+
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        if (parallel) {
+            // Scan and parse on every core, for large flat programs.
+            TokenBuffer tokens = new ParallelScanner(MappedScanner.read(Paths.get(path))).scanBuffer();
+            print(new ParallelParser(tokens).parse());
+            if (hadError) System.exit(65);
+            return;
+        }
+        if (cache) {
+            // Reuse the program parsed last time this exact source was run.
+            AstArena program = new AstCache(Paths.get(CACHE_DIRECTORY)).parse(Paths.get(path));
+            if (hadError) System.exit(65);
+            System.out.println(program);
+            return;
+        }
+        if (arena) {
+            // Parse into int columns instead of Expression objects.
+            TokenBuffer tokens = new Scanner(MappedScanner.read(Paths.get(path))).scanBuffer();
+            AstArena program = new ArenaParser(tokens).parse();
+            if (hadError) System.exit(65);
+            System.out.println(program);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(path))) {
+            if (pipeline) {
+                // Scan on a second thread while this one parses. Both collect
+                // their errors, which are reported here once the scanner
+                // thread is done.
+                Diagnostics scanErrors = new Diagnostics();
+                Diagnostics parseErrors = new Diagnostics();
+                Expression program;
+                Token stop;
+                try (TokenPipeline tokens = new TokenPipeline(new StreamScanner(channel, scanErrors), PIPELINE_CAPACITY)) {
+                    TokenCursor cursor = tokens.cursor();
+                    program = parse(cursor, parseErrors);
+                    stop = cursor.peek();
+                }
+                scanErrors.report(parseErrors, stop);
+                print(program);
+            } else {
+                run(MappedScanner.scan(channel));
+            }
+        }
         if (hadError) System.exit(65);
     }
 
@@ -44,20 +144,42 @@ public class Tila {
         }
     }
 
-    private static void run(String source) throws JsonProcessingException {
+    private static void run(String source) throws IOException {
         Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
+        run(scanner.scanBuffer().cursor());
+    }
+
+    private static void run(TokenCursor tokens) throws IOException {
         // For now, just print the tokens.
 //        for (Token token : tokens) {
 //            System.out.println(token);
 //        }
 
-        ParserRec parser = new ParserRec(tokens);
-        Expression program = parser.parse();
-        // Stop if there was a syntax error.
+        print(parse(tokens, null));
+    }
 
+    // Syntax errors go to diagnostics when one is given, otherwise straight
+    // to error.
+    private static Expression parse(TokenCursor tokens, Diagnostics diagnostics) {
+        if (table) return new Parser(tokens, diagnostics).parse();
+        // One node per distinct subexpression.
+        if (share) return new ParserRec(tokens, diagnostics, new NodeFactory()).parse();
+        return new ParserRec(tokens, diagnostics).parse();
+    }
+
+    private static void print(Expression program) throws IOException {
+        // Stop if there was a syntax error; the parser has reported them all.
         if (hadError) return;
-        System.out.println(program);
+        // Streamed out node by node rather than built up as one String.
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        if (json) {
+            JsonGenerator generator = new JsonFactory().createGenerator(out);
+            new AstWriter(generator).print(program);
+        } else {
+            new AstWriter(out).print(program);
+        }
+        out.write(System.lineSeparator());
+        out.flush();
     }
 
     static void error(int line, int column, String message) {
@@ -65,8 +187,7 @@ public class Tila {
     }
 
     static void error(Token token, String message) {
-        System.err.println(message);
-//        report(line, column, "", message);
+        report(token.line, token.column, "", message);
     }
 
     private static String getFilePath() {
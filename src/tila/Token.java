@@ -3,16 +3,37 @@ package tila;
 class Token {
     final TokenType type;
     final String lexeme;
-    final Object literal;
+    final long value;
     final int line;
     final int column;
+    final int symbol;
 
-    Token(TokenType type, String lexeme, Object literal, int line, int column) {
+    Token(TokenType type, String lexeme, long value, int line, int column) {
+        this(type, lexeme, value, line, column, -1);
+    }
+
+    Token(TokenType type, String lexeme, long value, int line, int column, int symbol) {
         this.type = type;
         this.lexeme = lexeme;
-        this.literal = literal;
+        this.value = value;
         this.line = line;
         this.column = column;
+        this.symbol = symbol;
+    }
+
+    // The same token wherever it appears: position is left out, so trees
+    // parsed from moved text still compare equal.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Token)) return false;
+        Token other = (Token) o;
+        return type == other.type && value == other.value && lexeme.equals(other.lexeme);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * type.hashCode() + lexeme.hashCode()) + Long.hashCode(value);
     }
 
     @Override
@@ -0,0 +1,394 @@
+package tila;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static tila.TokenType.*;
+
+// Tokens stored column-wise in parallel primitive arrays. Lexemes are not
+// stored at all; they are sliced out of the source when someone asks.
+// For identifiers and keywords the literal column holds the symbol id.
+//
+// The free space of the arrays is a gap at gapStart, with the tokens after
+// it at the end of the arrays, so that IncrementalLexer can splice in the
+// tokens of an edit without moving the rest. Those tokens keep their starts
+// and lines less tailOffset and tailLine; moving all of them is then just
+// changing the two. An edit costs the tokens it replaces plus those between
+// it and the previous edit, which the gap has to move across.
+class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final CharSequence source;
+    private final SymbolTable symbols;
+    private int size = 0;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] columns;
+    private long[] literals;
+    private int gapStart = 0;
+    private int gap;
+    private int tailOffset = 0;
+    private int tailLine = 0;
+
+    TokenBuffer(CharSequence source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    TokenBuffer(CharSequence source, int capacity) {
+        this(source, capacity, new SymbolTable());
+    }
+
+    TokenBuffer(CharSequence source, int capacity, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+        capacity = Math.max(capacity, 16);
+        types = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+        literals = new long[capacity];
+        gap = capacity;
+    }
+
+    void add(TokenType type, int start, int length, int line, int column, long literal) {
+        if (gapStart != size) moveGap(size);
+        if (size == types.length) grow();
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        columns[size] = column;
+        literals[size] = literal;
+        size++;
+        gapStart++;
+        gap--;
+    }
+
+    private void grow() {
+        ensureCapacity(types.length * 2);
+    }
+
+    // Keeps the tokens after the gap at the end of the arrays.
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length) return;
+        int tail = size - gapStart;
+        int from = gapStart + gap;
+        int to = capacity - tail;
+        types = grow(types, capacity, from, to, tail);
+        starts = grow(starts, capacity, from, to, tail);
+        lengths = grow(lengths, capacity, from, to, tail);
+        lines = grow(lines, capacity, from, to, tail);
+        columns = grow(columns, capacity, from, to, tail);
+        literals = grow(literals, capacity, from, to, tail);
+        gap = capacity - size;
+    }
+
+    private byte[] grow(byte[] column, int capacity, int from, int to, int tail) {
+        byte[] grown = Arrays.copyOf(column, capacity);
+        System.arraycopy(column, from, grown, to, tail);
+        return grown;
+    }
+
+    private int[] grow(int[] column, int capacity, int from, int to, int tail) {
+        int[] grown = Arrays.copyOf(column, capacity);
+        System.arraycopy(column, from, grown, to, tail);
+        return grown;
+    }
+
+    private long[] grow(long[] column, int capacity, int from, int to, int tail) {
+        long[] grown = Arrays.copyOf(column, capacity);
+        System.arraycopy(column, from, grown, to, tail);
+        return grown;
+    }
+
+    // Moves the gap to index, turning the starts and lines of the tokens it
+    // passes between absolute and relative to the tail.
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            move(index, index + gap, count);
+            for (int i = index + gap; i < gapStart + gap; i++) {
+                starts[i] -= tailOffset;
+                lines[i] -= tailLine;
+            }
+        } else if (index > gapStart) {
+            int count = index - gapStart;
+            move(gapStart + gap, gapStart, count);
+            for (int i = gapStart; i < index; i++) {
+                starts[i] += tailOffset;
+                lines[i] += tailLine;
+            }
+        }
+        gapStart = index;
+        if (gapStart == size) {
+            tailOffset = 0;
+            tailLine = 0;
+        }
+    }
+
+    private void move(int from, int to, int count) {
+        System.arraycopy(types, from, types, to, count);
+        System.arraycopy(starts, from, starts, to, count);
+        System.arraycopy(lengths, from, lengths, to, count);
+        System.arraycopy(lines, from, lines, to, count);
+        System.arraycopy(columns, from, columns, to, count);
+        System.arraycopy(literals, from, literals, to, count);
+    }
+
+    private int at(int index) {
+        return index < gapStart ? index : index + gap;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Sets the size up front so that disjoint ranges can then be filled by
+    // copyFrom from several threads. Only for a buffer nothing was spliced
+    // into, whose gap is at the end.
+    void resize(int size) {
+        ensureCapacity(size);
+        this.size = size;
+        gapStart = size;
+        gap = types.length - size;
+    }
+
+    // Replaces tokens [from, to) with the first count tokens of replacement,
+    // a buffer as the Scanner leaves it, with its gap at the end. Only the
+    // tokens between the gap and the edit move.
+    void splice(int from, int to, TokenBuffer replacement, int count) {
+        moveGap(to);
+        gapStart = from;
+        size -= to - from;
+        gap += to - from;
+        if (gap < count) ensureCapacity(Math.max(types.length * 2, size + count));
+        System.arraycopy(replacement.types, 0, types, from, count);
+        System.arraycopy(replacement.starts, 0, starts, from, count);
+        System.arraycopy(replacement.lengths, 0, lengths, from, count);
+        System.arraycopy(replacement.lines, 0, lines, from, count);
+        System.arraycopy(replacement.columns, 0, columns, from, count);
+        System.arraycopy(replacement.literals, 0, literals, from, count);
+        gapStart += count;
+        size += count;
+        gap -= count;
+    }
+
+    // Moves tokens from index on by offsetDelta characters and lineDelta lines.
+    // Tokens that were on line columnLine also move by columnDelta columns;
+    // lines only grow, so those are the first few. Right after a splice the
+    // gap is at from already.
+    void shift(int from, int offsetDelta, int lineDelta, int columnLine, int columnDelta) {
+        moveGap(from);
+        for (int i = from; i < size && line(i) == columnLine; i++) {
+            columns[i + gap] += columnDelta;
+        }
+        tailOffset += offsetDelta;
+        tailLine += lineDelta;
+        if (gapStart == size) {
+            tailOffset = 0;
+            tailLine = 0;
+        }
+    }
+
+    // Copies count tokens of chunk, starting at from, to position at. Lines are
+    // shifted by lineOffset and symbol ids translated through symbolMap.
+    void copyFrom(TokenBuffer chunk, int from, int count, int at, int lineOffset, int[] symbolMap) {
+        System.arraycopy(chunk.types, from, types, at, count);
+        System.arraycopy(chunk.starts, from, starts, at, count);
+        System.arraycopy(chunk.lengths, from, lengths, at, count);
+        System.arraycopy(chunk.columns, from, columns, at, count);
+        for (int i = 0; i < count; i++) {
+            lines[at + i] = chunk.lines[from + i] + lineOffset;
+            long literal = chunk.literals[from + i];
+            literals[at + i] = hasSymbol(chunk.type(from + i)) ? symbolMap[(int) literal] : literal;
+        }
+    }
+
+    CharSequence source() {
+        return source;
+    }
+
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[at(index)]];
+    }
+
+    int start(int index) {
+        return index < gapStart ? starts[index] : starts[index + gap] + tailOffset;
+    }
+
+    int length(int index) {
+        return lengths[at(index)];
+    }
+
+    int line(int index) {
+        return index < gapStart ? lines[index] : lines[index + gap] + tailLine;
+    }
+
+    int column(int index) {
+        return columns[at(index)];
+    }
+
+    long literal(int index) {
+        return literals[at(index)];
+    }
+
+    int symbol(int index) {
+        return hasSymbol(type(index)) ? (int) literal(index) : -1;
+    }
+
+    String lexeme(int index) {
+        if (hasSymbol(type(index))) return symbols.name((int) literal(index));
+        int start = start(index);
+        return source.subSequence(start, start + length(index)).toString();
+    }
+
+    Token token(int index) {
+        TokenType type = type(index);
+        long value = type == NUMBER ? literal(index) : 0;
+        return new Token(type, lexeme(index), value, line(index), column(index), symbol(index));
+    }
+
+    static boolean hasSymbol(TokenType type) {
+        switch (type) {
+            case IDENTIFIER:
+            case PRINT:
+            case WHILE:
+            case DO:
+            case BEGIN:
+            case END:
+            case INT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+
+    Cursor cursor() {
+        return new Cursor(0, size - 1);
+    }
+
+    // A cursor over tokens [from, to) that sees EOF at to.
+    Cursor cursor(int from, int to) {
+        return new Cursor(from, to);
+    }
+
+    // Splits the top-level block of a 'begin ... end' program into regions of
+    // at least step tokens, each cut just after a ';' at nesting depth one.
+    // The first region starts after the 'begin' and the last one runs to the
+    // EOF, so it holds the closing 'end' and anything after it. No cut is
+    // made past the first point where depth drops back to zero.
+    int[] regions(int step) {
+        int[] bounds = new int[size / Math.max(step, 1) + 2];
+        int count = 0;
+        bounds[count++] = 1;
+        int next = 1 + step;
+        int begin = BEGIN.ordinal();
+        int end = END.ordinal();
+        int semicolon = SEMICOLON.ordinal();
+        int depth = 1;
+        for (int i = 1; i < size && depth > 0; i++) {
+            int type = types[at(i)];
+            if (type == begin) {
+                depth++;
+            } else if (type == end) {
+                depth--;
+            } else if (type == semicolon && depth == 1 && i + 1 >= next && i + 1 < size - 1) {
+                bounds[count++] = i + 1;
+                next = i + 1 + step;
+            }
+        }
+        bounds[count++] = size - 1;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    class Cursor implements TokenCursor {
+        private int current;
+        private final int end;
+        // Tokens handed out by shared, one per type and literal (the symbol
+        // id of an identifier or keyword, the value of a number). Open
+        // addressing as in SymbolTable. Each cursor has its own, so cursors
+        // over regions of one buffer can be used from different threads.
+        private Token[] shared = new Token[64];
+        private int sharedCount = 0;
+
+        Cursor(int from, int end) {
+            this.current = from;
+            this.end = end;
+        }
+
+        int position() {
+            return current;
+        }
+
+        @Override
+        public TokenType peekType() {
+            return current == end ? EOF : TYPES[types[at(current)]];
+        }
+
+        @Override
+        public Token peek() {
+            if (current == end && type(current) != EOF) {
+                return new Token(EOF, "", 0, line(current), column(current));
+            }
+            return token(current);
+        }
+
+        @Override
+        public Token previous() {
+            return token(current - 1);
+        }
+
+        @Override
+        public Token shared() {
+            int index = current - 1;
+            TokenType type = type(index);
+            long literal = type == NUMBER || hasSymbol(type) ? literal(index) : 0;
+            int hash = 31 * type.ordinal() + Long.hashCode(literal);
+            int mask = shared.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            for (Token token; (token = shared[slot]) != null; slot = (slot + 1) & mask) {
+                if (token.type == type && (hasSymbol(type) ? token.symbol : token.value) == literal) return token;
+            }
+            Token token = new Token(type, lexeme(index), type == NUMBER ? literal : 0, 0, 0, symbol(index));
+            shared[slot] = token;
+            if (++sharedCount * 2 > shared.length) rehash();
+            return token;
+        }
+
+        private void rehash() {
+            Token[] old = shared;
+            shared = new Token[old.length * 2];
+            int mask = shared.length - 1;
+            for (Token token : old) {
+                if (token == null) continue;
+                long literal = hasSymbol(token.type) ? token.symbol : token.value;
+                int hash = 31 * token.type.ordinal() + Long.hashCode(literal);
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (shared[slot] != null) slot = (slot + 1) & mask;
+                shared[slot] = token;
+            }
+        }
+
+        @Override
+        public void advance() {
+            if (current != end) current++;
+        }
+    }
+}
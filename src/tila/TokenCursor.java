@@ -0,0 +1,54 @@
+package tila;
+
+import java.util.List;
+
+import static tila.TokenType.EOF;
+
+// The parser's view of the token stream: the current token and the one just
+// consumed. Token objects are only materialized when peek, previous or
+// shared is called.
+interface TokenCursor {
+    TokenType peekType();
+
+    Token peek();
+
+    Token previous();
+
+    // The token just consumed, for a parser to keep in its tree: equal to
+    // previous(), but a cursor may hand out one instance for all equal
+    // tokens, without a position; a node's place is its span.
+    default Token shared() {
+        return previous();
+    }
+
+    void advance();
+
+    class ListCursor implements TokenCursor {
+        private final List<Token> tokens;
+        private int current = 0;
+
+        ListCursor(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public TokenType peekType() {
+            return tokens.get(current).type;
+        }
+
+        @Override
+        public Token peek() {
+            return tokens.get(current);
+        }
+
+        @Override
+        public Token previous() {
+            return tokens.get(current - 1);
+        }
+
+        @Override
+        public void advance() {
+            if (tokens.get(current).type != EOF) current++;
+        }
+    }
+}
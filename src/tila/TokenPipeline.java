@@ -0,0 +1,130 @@
+package tila;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import static tila.TokenType.EOF;
+
+// Runs a StreamScanner on its own thread and hands tokens to the parser
+// through a bounded single-producer/single-consumer ring. Neither side takes
+// a lock: each owns one index, and a side that has to wait spins briefly
+// before parking until the other side unparks it.
+class TokenPipeline implements AutoCloseable {
+    private static final int SPINS = 128;
+
+    private final Token[] ring;
+    private final int mask;
+    // Next slot to read, written only by the consumer.
+    private volatile long head = 0;
+    // Next slot to write, written only by the producer.
+    private volatile long tail = 0;
+    private volatile Thread parkedConsumer;
+    private volatile Thread parkedProducer;
+    private volatile boolean closed = false;
+    private final Thread producer;
+    private IOException failure;
+
+    TokenPipeline(StreamScanner scanner, int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.ring = new Token[size];
+        this.mask = size - 1;
+        this.producer = new Thread(() -> produce(scanner), "tila-scanner");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    private void produce(StreamScanner scanner) {
+        try {
+            Token token;
+            do {
+                token = scanner.nextToken();
+            } while (put(token) && token.type != EOF);
+        } catch (IOException e) {
+            failure = e;
+            put(new Token(EOF, "", 0, 0, 0));
+        }
+    }
+
+    private boolean put(Token token) {
+        if (closed) return false;
+        long t = tail;
+        for (int spins = 0; t - head == ring.length; spins++) {
+            if (closed) return false;
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                parkedProducer = Thread.currentThread();
+                if (t - head == ring.length && !closed) LockSupport.park(this);
+                parkedProducer = null;
+            }
+        }
+        ring[(int) t & mask] = token;
+        tail = t + 1;
+        Thread consumer = parkedConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+        return true;
+    }
+
+    private Token take() {
+        long h = head;
+        for (int spins = 0; h == tail; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                parkedConsumer = Thread.currentThread();
+                if (h == tail) LockSupport.park(this);
+                parkedConsumer = null;
+            }
+        }
+        int slot = (int) h & mask;
+        Token token = ring[slot];
+        ring[slot] = null;
+        head = h + 1;
+        Thread waiting = parkedProducer;
+        if (waiting != null) LockSupport.unpark(waiting);
+        return token;
+    }
+
+    TokenCursor cursor() {
+        return new TokenCursor() {
+            private Token previous;
+            private Token current = take();
+
+            @Override
+            public TokenType peekType() {
+                return current.type;
+            }
+
+            @Override
+            public Token peek() {
+                return current;
+            }
+
+            @Override
+            public Token previous() {
+                return previous;
+            }
+
+            @Override
+            public void advance() {
+                if (current.type == EOF) return;
+                previous = current;
+                current = take();
+            }
+        };
+    }
+
+    // Stops the scanner thread if the parser gave up early, and surfaces any
+    // I/O error it hit.
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(producer);
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,25 @@
+package tila1;
+
+import tila.ParserGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GenerateParser {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: generate_parser <output directory>");
+            System.exit(64);
+        }
+        List<ParserGenerator.Rule> rules = new ArrayList<>();
+        for (Grammar grammar : Parser.GRAMMAR) {
+            List<Enum<?>> right = new ArrayList<>();
+            for (ITokenType symbol : grammar.right) right.add((Enum<?>) symbol);
+            // No actions in this grammar yet, so the parser only recognizes.
+            rules.add(new ParserGenerator.Rule((Enum<?>) grammar.left, right, null));
+        }
+        ParserGenerator.Target target = new ParserGenerator.Target("tila1", "GeneratedParser", "Parser.GRAMMAR", null, false, null);
+        ParserGenerator.generate(args[0], target, rules, Expression.Goal, TokenType.EPSILON, TokenType.EOF);
+    }
+}
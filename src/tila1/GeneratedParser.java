@@ -0,0 +1,145 @@
+package tila1;
+
+import java.util.List;
+
+// Generated by ParserGenerator from Parser.GRAMMAR. Do not edit.
+final class GeneratedParser {
+    private static class ParseError extends RuntimeException {
+        ParseError() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final ParseError PARSE_ERROR = new ParseError();
+
+    private final List<Token> tokens;
+    private int current = 0;
+
+    GeneratedParser(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    boolean parse() {
+        try {
+            goal();
+            return true;
+        } catch (ParseError error) {
+            return false;
+        }
+    }
+
+    private void goal() {
+        // Goal -> Expr
+        expr();
+    }
+
+    private void expr() {
+        // Expr -> Term Expr_
+        term();
+        expr_();
+    }
+
+    private void term() {
+        // Term -> Factor Term_
+        factor();
+        term_();
+    }
+
+    private void expr_() {
+        while (true) {
+            switch (lookahead()) {
+                case 8: // PLUS
+                {
+                    // Expr_ -> PLUS Term Expr_
+                    advance();
+                    term();
+                    continue;
+                }
+                case 2: // MINUS
+                {
+                    // Expr_ -> MINUS Term Expr_
+                    advance();
+                    term();
+                    continue;
+                }
+                case 1: // RIGHT_PAREN
+                case 9: // EOF
+                    return;
+                default:
+                    throw error("Expect RIGHT_PAREN or MINUS or PLUS or EOF");
+            }
+        }
+    }
+
+    private void factor() {
+        switch (lookahead()) {
+            case 0: // LEFT_PAREN
+            {
+                // Factor -> LEFT_PAREN Expr RIGHT_PAREN
+                advance();
+                expr();
+                match(1, "Expect RIGHT_PAREN");
+                return;
+            }
+            case 6: // NUMBER
+            {
+                // Factor -> NUMBER
+                advance();
+                return;
+            }
+            case 7: // NAME
+            {
+                // Factor -> NAME
+                advance();
+                return;
+            }
+            default:
+                throw error("Expect LEFT_PAREN or NUMBER or NAME");
+        }
+    }
+
+    private void term_() {
+        while (true) {
+            switch (lookahead()) {
+                case 3: // STAR
+                {
+                    // Term_ -> STAR Factor Term_
+                    advance();
+                    factor();
+                    continue;
+                }
+                case 4: // SLASH
+                {
+                    // Term_ -> SLASH Factor Term_
+                    advance();
+                    factor();
+                    continue;
+                }
+                case 1: // RIGHT_PAREN
+                case 2: // MINUS
+                case 8: // PLUS
+                case 9: // EOF
+                    return;
+                default:
+                    throw error("Expect RIGHT_PAREN or MINUS or STAR or SLASH or PLUS or EOF");
+            }
+        }
+    }
+
+    private int lookahead() {
+        return tokens.get(current).type.ordinal();
+    }
+
+    private void advance() {
+        if (lookahead() != 9) current++;
+    }
+
+    private void match(int type, String message) {
+        if (lookahead() != type) throw error(message);
+        advance();
+    }
+
+    private ParseError error(String message) {
+        return PARSE_ERROR;
+    }
+}